@@ -0,0 +1,35 @@
+package com.example.ecommerce.cart;
+
+import com.example.ecommerce.dto.CartResponse;
+import com.example.ecommerce.model.Cart;
+import com.example.ecommerce.service.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of rendering a cart (JpaCartStore.convertToResponse) by number of lines
+ */
+@State(Scope.Benchmark)
+public class JpaCartStoreBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int lines;
+
+    private JpaCartStore cartStore;
+    private Cart cart;
+
+    @Setup
+    public void setUp() {
+        // Repositories are not touched by the conversion
+        cartStore = new JpaCartStore(null, null, null, null, null);
+        cart = BenchmarkFixtures.cart(lines);
+    }
+
+    @Benchmark
+    public CartResponse convertToResponse() {
+        return cartStore.convertToResponse(cart);
+    }
+}
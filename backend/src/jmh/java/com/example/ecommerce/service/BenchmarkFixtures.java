@@ -0,0 +1,77 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Cart;
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderItem;
+import com.example.ecommerce.model.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entity fixtures shared by the benchmarks
+ * Built in memory, no database involved
+ */
+public final class BenchmarkFixtures {
+
+    private static final String[] CATEGORIES = {"Electronics", "Books", "Clothing", "Home", "Sports"};
+
+    private BenchmarkFixtures() {}
+
+    public static Product product(long id) {
+        return Product.builder()
+                .id(id)
+                .name("Product " + id)
+                .price(BigDecimal.valueOf(100 + id % 9900, 2))
+                .stock((int) (id % 500))
+                .imageUrl("https://cdn.example.com/products/" + id + ".jpg")
+                .category(CATEGORIES[(int) (id % CATEGORIES.length)])
+                .description("Description of product " + id + " with a few more words to be realistic")
+                .build();
+    }
+
+    public static List<Product> catalog(int size) {
+        List<Product> products = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            products.add(product(id));
+        }
+        return products;
+    }
+
+    public static Cart cart(int lines) {
+        Cart cart = Cart.builder().id(1L).build();
+        for (long i = 1; i <= lines; i++) {
+            cart.addItem(CartItem.builder()
+                    .id(i)
+                    .product(product(i))
+                    .quantity((int) (i % 5) + 1)
+                    .build());
+        }
+        return cart;
+    }
+
+    public static Order order(int lines) {
+        Order order = Order.builder()
+                .id(1L)
+                .userId(1L)
+                .shippingAddress("1 Benchmark Street")
+                .build();
+        BigDecimal total = BigDecimal.ZERO;
+        for (long i = 1; i <= lines; i++) {
+            Product product = product(i);
+            OrderItem item = OrderItem.builder()
+                    .id(i)
+                    .productId(product.getId())
+                    .productName(product.getName())
+                    .price(product.getPrice())
+                    .quantity((int) (i % 5) + 1)
+                    .build();
+            order.addItem(item);
+            total = total.add(item.getSubtotal());
+        }
+        order.setTotal(total);
+        return order;
+    }
+}
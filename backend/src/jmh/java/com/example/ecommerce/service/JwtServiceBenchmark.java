@@ -0,0 +1,79 @@
+package com.example.ecommerce.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Date;
+
+/**
+ * Per-request JWT cost
+ *
+ * legacyPerRequest reproduces the old filter path: three full parses
+ * (username, validity, expiration), each building a new key and parser.
+ * parseUncached is one verification with the shared parser (cache miss),
+ * parseCached is the steady state for a token seen before.
+ */
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    // Same secret as JwtService
+    private static final byte[] SECRET = "this_is_a_very_secret_key_1234567890".getBytes(StandardCharsets.UTF_8);
+
+    private JwtService jwtService;
+    private JwtService uncachedJwtService;
+    private String token;
+    private String otherToken;
+    private boolean flip;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        jwtService = new JwtService(10_000);
+        // a one-entry cache that we alternate two tokens through never hits
+        uncachedJwtService = new JwtService(1);
+        token = jwtService.generateToken("bench@example.com");
+        Thread.sleep(1100); // different iat, so a different token
+        otherToken = jwtService.generateToken("bench@example.com");
+        jwtService.parseToken(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken("bench@example.com");
+    }
+
+    @Benchmark
+    public boolean legacyPerRequest() {
+        String username = legacyClaims(token).getSubject();
+        boolean valid = legacyClaims(token).getSubject().equals(username);
+        return valid && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean parseUncached() {
+        flip = !flip;
+        Claims claims = uncachedJwtService.parseToken(flip ? token : otherToken);
+        return uncachedJwtService.isTokenValid(claims, "bench@example.com");
+    }
+
+    @Benchmark
+    public boolean parseCached() {
+        Claims claims = jwtService.parseToken(token);
+        return jwtService.isTokenValid(claims, "bench@example.com");
+    }
+
+    private Claims legacyClaims(String jwt) {
+        Key key = Keys.hmacShaKeyFor(SECRET);
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(jwt)
+                .getBody();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.EcommerceApplication;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.dto.OrderResponse;
+import com.example.ecommerce.model.Cart;
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.Role;
+import com.example.ecommerce.model.User;
+import com.example.ecommerce.repository.CartRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Order creation latency (OrderService.createOrder) by number of cart lines
+ *
+ * Unlike the other benchmarks this one runs against a real PostgreSQL: it starts the
+ * application context (no web server) with the usual spring.datasource.* settings,
+ * which can be overridden with -jvmArgsAppend "-Dspring.datasource.url=...".
+ * The cart is refilled before every invocation, outside the measured time.
+ * The teardown prints how many JDBC statements one order took (Hibernate statistics).
+ * Order creation is set-based (one statement each to copy, reserve and delete the lines),
+ * so that count, and ideally the latency, stays the same whatever the line count.
+ */
+@State(Scope.Benchmark)
+public class OrderCreationBenchmark {
+
+    private static final CreateOrderRequest REQUEST = new CreateOrderRequest("1 Benchmark Street, Springfield");
+
+    @Param({"1", "10", "100"})
+    public int lines;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private CartRepository cartRepository;
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+
+    private Long userId;
+    private List<Product> products;
+
+    private long orders;
+    private long statementsBefore;
+    private long statements;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(EcommerceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+        orderService = context.getBean(OrderService.class);
+        cartRepository = context.getBean(CartRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        User user = context.getBean(UserRepository.class).save(User.builder()
+                .name("Benchmark")
+                .email("bench-" + UUID.randomUUID() + "@example.com")
+                .password("not-a-hash")
+                .role(Role.USER)
+                .build());
+        userId = user.getId();
+        cartRepository.save(Cart.builder().user(user).build());
+
+        List<Product> catalog = new ArrayList<>(lines);
+        for (long i = 1; i <= lines; i++) {
+            Product product = BenchmarkFixtures.product(i);
+            product.setId(null);
+            product.setStock(Integer.MAX_VALUE);
+            catalog.add(product);
+        }
+        products = context.getBean(ProductRepository.class).saveAll(catalog);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillCart() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Cart cart = cartRepository.findWithItemsByUserId(userId).orElseThrow();
+            for (Product product : products) {
+                cart.addItem(CartItem.builder().product(product).quantity(1).build());
+            }
+        });
+        statementsBefore = statistics.getPrepareStatementCount();
+    }
+
+    @Benchmark
+    public OrderResponse createOrder() {
+        return orderService.createOrder(userId, REQUEST);
+    }
+
+    @TearDown(Level.Invocation)
+    public void countStatements() {
+        statements += statistics.getPrepareStatementCount() - statementsBefore;
+        orders++;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        System.out.printf("%n%d lines: %.1f JDBC statements per order%n", lines, (double) statements / orders);
+        context.close();
+    }
+}
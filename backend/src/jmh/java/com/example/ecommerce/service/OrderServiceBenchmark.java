@@ -0,0 +1,35 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.OrderResponse;
+import com.example.ecommerce.model.Order;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of rendering an order (OrderService.convertToResponse) by number of lines
+ */
+@State(Scope.Benchmark)
+public class OrderServiceBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int lines;
+
+    private OrderService orderService;
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        // Repositories and collaborators are not touched by the conversion
+        orderService = new OrderService(null, null, null, null, null, null, null, new SimpleMeterRegistry());
+        order = BenchmarkFixtures.order(lines);
+    }
+
+    @Benchmark
+    public OrderResponse convertToResponse() {
+        return orderService.convertToResponse(order);
+    }
+}
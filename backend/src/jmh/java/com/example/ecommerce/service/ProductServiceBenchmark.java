@@ -0,0 +1,40 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ProductResponse;
+import com.example.ecommerce.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cost of mapping a whole catalog to ProductResponse (ProductService.mapToResponse)
+ */
+@State(Scope.Benchmark)
+public class ProductServiceBenchmark {
+
+    @Param({"10000"})
+    public int catalogSize;
+
+    private ProductService productService;
+    private List<Product> catalog;
+
+    @Setup
+    public void setUp() {
+        productService = new ProductService(null, null, null);
+        catalog = BenchmarkFixtures.catalog(catalogSize);
+    }
+
+    @Benchmark
+    public List<ProductResponse> mapCatalog() {
+        List<ProductResponse> responses = new ArrayList<>(catalog.size());
+        for (Product product : catalog) {
+            responses.add(productService.mapToResponse(product));
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.exception.PaymentProviderUnavailableException;
+import com.example.ecommerce.stripe.StripeGateway;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.checkout.Session;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Caller-visible cost of a Stripe call through StripeGateway against the local stub
+ *
+ * healthy: stub answers normally.
+ * slow: stub takes longer than the read timeout; calls time out until the breaker
+ * opens, after which callers fail fast instead of waiting.
+ * failing: stub answers 500 to every request; same, without the wait.
+ */
+@State(Scope.Benchmark)
+public class StripeGatewayBenchmark {
+
+    @Param({"healthy", "slow", "failing"})
+    private String stub;
+
+    private LocalStripeStub stripeStub;
+    private StripeGateway gateway;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stripeStub = LocalStripeStub.start();
+        Stripe.apiKey = "sk_test_benchmark";
+        Stripe.overrideApiBase(stripeStub.baseUrl());
+        if ("slow".equals(stub)) {
+            stripeStub.delayMillis(500);
+        } else if ("failing".equals(stub)) {
+            stripeStub.failureRate(1.0);
+        }
+        gateway = new StripeGateway(16, Duration.ofMillis(250), Duration.ofSeconds(1), Duration.ofMillis(200), 0,
+                20, 10, 0.5, Duration.ofSeconds(30), 3, new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+        stripeStub.close();
+    }
+
+    @Benchmark
+    public Object retrieveSession() throws StripeException {
+        try {
+            return gateway.call("checkout.session.retrieve",
+                    options -> Session.retrieve("cs_test_bench", options.build()));
+        } catch (PaymentProviderUnavailableException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.ecommerce.service;
+
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+/**
+ * Cost of reading a checkout.session.completed event
+ *
+ * sessionFromEvent is the current path: the session comes out of the signed payload.
+ * retrieveFromStub is the old path: the same parse plus Session.retrieve, here against
+ * a local stub, so it only shows the client-side cost of the call. Against the real API
+ * add a TLS round trip to Stripe on top.
+ */
+@State(Scope.Benchmark)
+public class StripeWebhookBenchmark {
+
+    private LocalStripeStub stub;
+    private String payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = LocalStripeStub.start();
+        Stripe.apiKey = "sk_test_benchmark";
+        Stripe.overrideApiBase(stub.baseUrl());
+        payload = "{\"id\":\"evt_bench\",\"object\":\"event\",\"api_version\":\"" + Stripe.API_VERSION + "\","
+                + "\"created\":1700000000,\"type\":\"checkout.session.completed\","
+                + "\"data\":{\"object\":" + LocalStripeStub.sessionJson("cs_test_bench", 1, 4999) + "}}";
+    }
+
+    @TearDown
+    public void tearDown() {
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+        stub.close();
+    }
+
+    @Benchmark
+    public String sessionFromEvent() {
+        Event event = ApiResource.GSON.fromJson(payload, Event.class);
+        return StripeService.sessionFromEvent(event).getMetadata().get("orderId");
+    }
+
+    @Benchmark
+    public String retrieveFromStub() throws StripeException {
+        Event event = ApiResource.GSON.fromJson(payload, Event.class);
+        String sessionId = StripeService.sessionFromEvent(event).getId();
+        return Session.retrieve(sessionId).getMetadata().get("orderId");
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.ecommerce.service;
+
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.checkout.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request throughput with spring.threads.virtual.enabled on and off, under Stripe latency
+ *
+ * One operation is a burst of REQUESTS requests: every fourth blocks on a Stripe call
+ * (Session.retrieve against the local stub, which answers after stripeDelayMillis), the
+ * others are short CPU-bound requests. platform runs them on a 200-thread pool, Tomcat's
+ * default maxThreads; virtual on a virtual thread per request, as Tomcat does with the
+ * switch on. The time per burst is the inverse of throughput.
+ *
+ * StripeGateway is left out on purpose: its bulkhead (stripe.client.max-concurrent) caps
+ * concurrent Stripe calls the same way in both modes, so this measures the thread model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadsBenchmark {
+
+    private static final int REQUESTS = 2000;
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"50", "250"})
+    private long stripeDelayMillis;
+
+    private LocalStripeStub stub;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = LocalStripeStub.start();
+        stub.delayMillis(stripeDelayMillis);
+        Stripe.apiKey = "sk_test_benchmark";
+        Stripe.overrideApiBase(stub.baseUrl());
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+        stub.close();
+    }
+
+    @Benchmark
+    public int burst() throws InterruptedException, ExecutionException {
+        List<Future<Object>> requests = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            requests.add(executor.submit(i % 4 == 0 ? this::checkout : this::browse));
+        }
+        int completed = 0;
+        for (Future<Object> request : requests) {
+            request.get();
+            completed++;
+        }
+        return completed;
+    }
+
+    /**
+     * A request that waits on Stripe
+     */
+    private Object checkout() throws StripeException {
+        return Session.retrieve("cs_test_bench").getId();
+    }
+
+    /**
+     * A request that only uses the CPU (rendering a cached page)
+     */
+    private Object browse() {
+        Blackhole.consumeCPU(10_000);
+        return null;
+    }
+}
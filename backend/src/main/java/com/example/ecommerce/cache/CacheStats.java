@@ -0,0 +1,39 @@
+package com.example.ecommerce.cache;
+
+/**
+ * Point-in-time counters for one cache
+ * Returned by the admin metrics endpoints
+ */
+public class CacheStats {
+    private final int size;
+    private final int maxSize;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    public CacheStats(int size, int maxSize, long hits, long misses, long evictions) {
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public int getSize() { return size; }
+
+    public int getMaxSize() { return maxSize; }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+
+    public long getEvictions() { return evictions; }
+
+    /**
+     * Fraction of lookups served from the cache (0 when nothing was looked up yet)
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
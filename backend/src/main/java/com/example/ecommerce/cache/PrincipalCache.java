@@ -0,0 +1,83 @@
+package com.example.ecommerce.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-based cache of authenticated principals keyed by email
+ *
+ * JwtAuthenticationFilter resolves the principal of every authenticated
+ * request through this cache instead of querying the users table each time.
+ * Hits are database lookups saved, misses are lookups that went to the database.
+ *
+ * Entries are dropped when the user row changes (see UserCacheInvalidationListener),
+ * so role and password changes take effect on the next request; the TTL bounds
+ * staleness for anything changed outside the application.
+ *
+ * A miss may read the row just before a change commits and only fill after its
+ * eviction ran. As in ProductCatalogCache, every eviction moves a generation on
+ * (per stripe of emails), and a fill only goes in if the generation it captured
+ * before loading is unchanged.
+ */
+@Component
+public class PrincipalCache {
+
+    private static final int STRIPES = 64;
+
+    private final LruCache<String, UserDetails> principals;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    public PrincipalCache(
+            @Value("${app.auth.principal-cache.max-size:10000}") int maxSize,
+            @Value("${app.auth.principal-cache.ttl:5m}") Duration ttl) {
+        this.principals = new LruCache<>(maxSize, ttl);
+    }
+
+    /**
+     * Get the cached principal for an email, loading and caching it on a miss
+     * The loaded principal is returned but not cached if the email was evicted while loading
+     */
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        UserDetails cached = principals.get(email);
+        if (cached != null) {
+            return cached;
+        }
+        int stripe = stripe(email);
+        long generation = generations.get(stripe);
+        UserDetails loaded = loader.apply(email);
+        synchronized (this) {
+            if (generations.get(stripe) == generation) {
+                principals.put(email, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop the cached principal of one user (role, password or email changed)
+     */
+    public synchronized void invalidate(String email) {
+        generations.incrementAndGet(stripe(email));
+        principals.remove(email);
+    }
+
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        principals.clear();
+    }
+
+    public CacheStats stats() {
+        return principals.stats();
+    }
+
+    private static int stripe(String email) {
+        return Math.floorMod(email.hashCode(), STRIPES);
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.ecommerce.cache;
+
+import com.example.ecommerce.dto.ProductResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory product catalog cache used by ProductService
+ *
+ * Holds ready-built ProductResponse snapshots keyed by product id, plus
+ * listings (all products / products per category) stored as lists of ids.
+ * Listings only hold ids so a single product change never forces us to
+ * rebuild every listing that contains it - we just replace one snapshot.
+ *
+ * Writes go through ProductService, which keeps the cache up to date
+ * (write-through on create/update, invalidate on delete).
+ *
+ * A read miss fills the cache from what it loaded, which may already be older
+ * than a write that landed meanwhile. So every write or invalidation moves a
+ * generation on first (per stripe of product ids, and one for the listings),
+ * and a fill only goes in if the generations it captured before reading the
+ * database (beginRead) are unchanged. A listing longer than the product cache
+ * is not cached at all: its snapshots would only push each other out.
+ */
+@Component
+public class ProductCatalogCache {
+
+    private static final String ALL_PRODUCTS = "all";
+    private static final String CATEGORY_PREFIX = "category:";
+    /**
+     * Product generations are kept per stripe of ids, so stock changes on hot
+     * products do not keep every other product's fills out
+     */
+    private static final int STRIPES = 256;
+    private static final int LISTINGS = STRIPES;
+
+    private final LruCache<Long, ProductResponse> productsById;
+    private final LruCache<String, List<Long>> listings;
+    /**
+     * STRIPES product generations followed by the listing generation
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES + 1);
+
+    public ProductCatalogCache(
+            @Value("${app.catalog.cache.max-products:10000}") int maxProducts,
+            @Value("${app.catalog.cache.max-listings:256}") int maxListings) {
+        this.productsById = new LruCache<>(maxProducts);
+        this.listings = new LruCache<>(maxListings);
+    }
+
+    /**
+     * Get a cached product, or null on a miss
+     */
+    public ProductResponse get(Long id) {
+        return productsById.get(id);
+    }
+
+    /**
+     * Capture the generations before reading the database for a fill
+     */
+    public ReadStamp beginRead() {
+        long[] captured = new long[generations.length()];
+        for (int i = 0; i < captured.length; i++) {
+            captured[i] = generations.get(i);
+        }
+        return new ReadStamp(captured);
+    }
+
+    /**
+     * Fill a snapshot read under the stamp, unless the product changed since
+     */
+    public synchronized void put(ProductResponse product, ReadStamp stamp) {
+        int stripe = stripe(product.getId());
+        if (generations.get(stripe) == stamp.generations[stripe]) {
+            productsById.put(product.getId(), product);
+        }
+    }
+
+    /**
+     * Get the cached ids for a listing (category == null means all products)
+     * Returns null on a miss
+     */
+    public List<Long> getListing(String category) {
+        return listings.get(listingKey(category));
+    }
+
+    /**
+     * Fill a listing read under the stamp, unless listings were invalidated since
+     */
+    public synchronized void putListing(String category, List<Long> productIds, ReadStamp stamp) {
+        if (canHoldListing(productIds.size()) && generations.get(LISTINGS) == stamp.generations[LISTINGS]) {
+            listings.put(listingKey(category), List.copyOf(productIds));
+        }
+    }
+
+    /**
+     * Whether a listing of this many products is worth caching: all of its snapshots fit in the cache
+     */
+    public boolean canHoldListing(int size) {
+        return size <= productsById.getMaxSize();
+    }
+
+    /**
+     * Write-through after a product was created or updated
+     * previousCategory is null for newly created products
+     */
+    public synchronized void productSaved(ProductResponse saved, String previousCategory, boolean created) {
+        generations.incrementAndGet(stripe(saved.getId()));
+        productsById.put(saved.getId(), saved);
+        if (created) {
+            generations.incrementAndGet(LISTINGS);
+            listings.remove(ALL_PRODUCTS);
+            listings.remove(listingKey(saved.getCategory()));
+        } else if (!Objects.equals(previousCategory, saved.getCategory())) {
+            generations.incrementAndGet(LISTINGS);
+            listings.remove(listingKey(previousCategory));
+            listings.remove(listingKey(saved.getCategory()));
+        }
+    }
+
+    /**
+     * Invalidate after a product was deleted
+     */
+    public synchronized void productDeleted(Long id, String category) {
+        generations.incrementAndGet(stripe(id));
+        generations.incrementAndGet(LISTINGS);
+        productsById.remove(id);
+        listings.remove(ALL_PRODUCTS);
+        listings.remove(listingKey(category));
+    }
+
+    /**
+     * Drop snapshots whose data changed outside ProductService (e.g. stock)
+     * Listings stay valid because membership did not change
+     */
+    public synchronized void evict(Collection<Long> productIds) {
+        for (Long id : productIds) {
+            generations.incrementAndGet(stripe(id));
+            productsById.remove(id);
+        }
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < generations.length(); i++) {
+            generations.incrementAndGet(i);
+        }
+        productsById.clear();
+        listings.clear();
+    }
+
+    public Map<String, CacheStats> stats() {
+        return Map.of(
+                "products", productsById.stats(),
+                "listings", listings.stats()
+        );
+    }
+
+    private String listingKey(String category) {
+        return category == null ? ALL_PRODUCTS : CATEGORY_PREFIX + category;
+    }
+
+    private static int stripe(Long id) {
+        return Math.floorMod(Long.hashCode(id), STRIPES);
+    }
+
+    /**
+     * The cache generations as seen before a database read, see beginRead
+     */
+    public static final class ReadStamp {
+        private final long[] generations;
+
+        private ReadStamp(long[] generations) {
+            this.generations = generations;
+        }
+    }
+}
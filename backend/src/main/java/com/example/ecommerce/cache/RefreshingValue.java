@@ -0,0 +1,39 @@
+package com.example.ecommerce.cache;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A value recomputed at most once per interval, for gauges whose reading costs a query
+ * Callers arriving while it is being recomputed wait for the new value instead of querying too
+ */
+public class RefreshingValue<T> {
+
+    private final Supplier<T> source;
+    private final long intervalNanos;
+
+    // A lock, not synchronized: the source is usually I/O and must not pin a virtual thread's carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private T value;
+    private long readAt;
+
+    public RefreshingValue(Duration interval, Supplier<T> source) {
+        this.source = source;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public T get() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (value == null || now - readAt >= intervalNanos) {
+                value = source.get();
+                readAt = now;
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
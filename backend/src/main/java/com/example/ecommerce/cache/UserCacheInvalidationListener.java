@@ -0,0 +1,53 @@
+package com.example.ecommerce.cache;
+
+import com.example.ecommerce.model.User;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * JPA entity listener that evicts a user's cached principal whenever the
+ * user row is updated or deleted (role change, password change, ...)
+ * Principals are cached by email, so an email change evicts the old one as well;
+ * the listener keeps the stored email on the entity (User.storedEmail) for that
+ * Instantiated by Hibernate through Spring, so the cache is injected
+ */
+public class UserCacheInvalidationListener {
+
+    private final PrincipalCache principalCache;
+
+    public UserCacheInvalidationListener(PrincipalCache principalCache) {
+        this.principalCache = principalCache;
+    }
+
+    @PostLoad
+    @PostPersist
+    public void userStored(User user) {
+        user.setStoredEmail(user.getEmail());
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void userChanged(User user) {
+        List<String> emails = user.getStoredEmail() == null || user.getStoredEmail().equals(user.getEmail())
+                ? List.of(user.getEmail())
+                : List.of(user.getStoredEmail(), user.getEmail());
+        user.setStoredEmail(user.getEmail());
+        emails.forEach(principalCache::invalidate);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // evict again once committed, in case a concurrent request re-cached the old row meanwhile;
+            // a miss still loading the old row then finds the generation moved on and doesn't fill
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    emails.forEach(principalCache::invalidate);
+                }
+            });
+        }
+    }
+}
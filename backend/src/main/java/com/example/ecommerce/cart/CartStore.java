@@ -0,0 +1,59 @@
+package com.example.ecommerce.cart;
+
+import com.example.ecommerce.dto.CartBatchResponse;
+import com.example.ecommerce.dto.CartOperationRequest;
+import com.example.ecommerce.dto.CartResponse;
+
+import java.util.List;
+
+/**
+ * Storage of shopping carts, behind CartService
+ *
+ * Two implementations, picked with app.cart.store:
+ * - jpa (default): every change is its own database transaction (JpaCartStore)
+ * - memory: carts are served from memory and written to the database in
+ *   batches in the background (WriteBehindCartStore)
+ *
+ * Every method creates the user's (empty) cart if there is none yet.
+ *
+ * Every change moves the cart's version on by one. Changing methods take the
+ * version the client last saw (If-Match), or null to apply unconditionally;
+ * a cart at another version fails with PreconditionFailedException. A change
+ * that races another one fails with ObjectOptimisticLockingFailureException
+ * and can simply be called again (CartService retries it).
+ */
+public interface CartStore {
+
+    CartResponse getCart(Long userId);
+
+    /**
+     * Add a product, or increase its quantity if it is already in the cart
+     */
+    CartResponse addItem(Long userId, Long productId, int quantity, Long expectedVersion);
+
+    /**
+     * Set a line's quantity; 0 or less removes the line
+     */
+    CartResponse updateItem(Long userId, Long cartItemId, int quantity, Long expectedVersion);
+
+    CartResponse removeItem(Long userId, Long cartItemId, Long expectedVersion);
+
+    /**
+     * Apply operations in order against one load of the cart, as one unit of work
+     * An operation that fails is reported and skipped; the cart is rendered once at the end
+     * Operations must already carry the fields their type needs (checked by CartService)
+     */
+    CartBatchResponse applyBatch(Long userId, List<CartOperationRequest> operations, Long expectedVersion);
+
+    /**
+     * Remove every line; joins the caller's transaction (order creation, which holds
+     * the carts row lock, so this must not write the cart in a transaction of its own)
+     */
+    void clear(Long userId);
+
+    /**
+     * Make every acknowledged change to the cart durable, so it can be read from the database
+     * Call it outside any transaction (before order creation opens its own)
+     */
+    void flush(Long userId);
+}
@@ -0,0 +1,362 @@
+package com.example.ecommerce.cart;
+
+import com.example.ecommerce.dto.CartBatchResponse;
+import com.example.ecommerce.dto.CartItemResponse;
+import com.example.ecommerce.dto.CartOperationRequest;
+import com.example.ecommerce.dto.CartOperationResult;
+import com.example.ecommerce.dto.CartResponse;
+import com.example.ecommerce.exception.PreconditionFailedException;
+import com.example.ecommerce.model.Cart;
+import com.example.ecommerce.model.CartItem;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.User;
+import com.example.ecommerce.repository.CartItemRepository;
+import com.example.ecommerce.repository.CartRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.UserRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Cart store backed directly by the carts / cart_items tables (app.cart.store=jpa, the default)
+ * Every change is a synchronous transaction, so an acknowledged change is always durable
+ *
+ * Concurrency is optimistic: a change loads the cart, then moves carts.version on
+ * with a compare-and-set (CartRepository.bumpVersion). If another change committed
+ * in between, the compare-and-set matches no row and the change fails with
+ * ObjectOptimisticLockingFailureException instead of overwriting it; lines are
+ * additionally guarded by their own @Version.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaCartStore implements CartStore {
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final SequenceBlockAllocator cartIds;
+    private final SequenceBlockAllocator cartItemIds;
+
+    public JpaCartStore(CartRepository cartRepository, CartItemRepository cartItemRepository,
+                        ProductRepository productRepository, UserRepository userRepository,
+                        JdbcTemplate jdbcTemplate) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.cartIds = new SequenceBlockAllocator(jdbcTemplate, "carts_seq", 50);
+        this.cartItemIds = new SequenceBlockAllocator(jdbcTemplate, "cart_items_seq", 50);
+    }
+
+    @Override
+    @Transactional
+    public CartResponse getCart(Long userId) {
+        Cart cart = getOrCreateCart(userId);
+        return convertToResponse(cart);
+    }
+
+    /**
+     * The line is written with a single upsert (which also moves the cart's version on),
+     * so parallel adds of the same product (two tabs, double clicks) end up as one line
+     * with the summed quantity and never conflict with each other
+     * Only a user's first add (no cart yet), an unknown product or a failed If-Match
+     * takes the slow path
+     */
+    @Override
+    @Transactional
+    public CartResponse addItem(Long userId, Long productId, int quantity, Long expectedVersion) {
+        long cartItemId = cartItemIds.nextId();
+        long anyVersion = expectedVersion != null ? expectedVersion : -1;
+        if (cartItemRepository.upsertQuantity(cartItemId, userId, productId, quantity, anyVersion) == 0) {
+            if (!productRepository.existsById(productId)) {
+                throw new RuntimeException("Product not found");
+            }
+            cartRepository.insertIfAbsent(cartIds.nextId(), userId);
+            if (cartItemRepository.upsertQuantity(cartItemId, userId, productId, quantity, anyVersion) == 0) {
+                // The cart and the product exist, so the cart was not at the expected version
+                throw versionMismatch(getOrCreateCart(userId));
+            }
+        }
+        // The upsert cleared the persistence context, so this reads the line and version as written
+        return convertToResponse(getOrCreateCart(userId));
+    }
+
+    @Override
+    @Transactional
+    public CartResponse updateItem(Long userId, Long cartItemId, int quantity, Long expectedVersion) {
+        Cart cart = getCartForChange(userId, expectedVersion);
+        updateLine(cart, cartItemId, quantity);
+        return convertToResponse(cart, bumpVersion(cart));
+    }
+
+    @Override
+    @Transactional
+    public CartResponse removeItem(Long userId, Long cartItemId, Long expectedVersion) {
+        Cart cart = getCartForChange(userId, expectedVersion);
+        removeLine(cart, cartItemId);
+        return convertToResponse(cart, bumpVersion(cart));
+    }
+
+    /**
+     * One cart load, one product lookup for all ADDs, and one flush: the resulting inserts,
+     * updates and deletes go out in JDBC batches when the version is moved on at the end
+     * An operation that doesn't apply to the cart (unknown product, line not in the cart) is
+     * reported and skipped without throwing, so it can't mark the transaction rollback-only;
+     * anything else fails the whole batch
+     */
+    @Override
+    @Transactional
+    public CartBatchResponse applyBatch(Long userId, List<CartOperationRequest> operations, Long expectedVersion) {
+        Cart cart = getCartForChange(userId, expectedVersion);
+
+        Set<Long> productIds = new HashSet<>();
+        for (CartOperationRequest operation : operations) {
+            if (operation.getType() == CartOperationRequest.Type.ADD) {
+                productIds.add(operation.getProductId());
+            }
+        }
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(productIds)) {
+            products.put(product.getId(), product);
+        }
+
+        // Lines removed earlier in the batch, by product: adding the product again puts the same
+        // line back, since Hibernate would run a new line's INSERT before the old one's DELETE
+        // and (cart_id, product_id) is unique
+        Map<Long, CartItem> removed = new HashMap<>();
+        List<CartOperationResult> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            CartOperationRequest operation = operations.get(i);
+            // null: the operation doesn't apply to this cart
+            Long cartItemId = switch (operation.getType()) {
+                case ADD -> {
+                    Product product = products.get(operation.getProductId());
+                    yield product == null ? null : addLine(cart, product, operation.getQuantity(), removed);
+                }
+                case UPDATE, REMOVE -> {
+                    CartItem line = findLine(cart, operation.getCartItemId());
+                    if (line == null) {
+                        yield null;
+                    }
+                    if (operation.getType() == CartOperationRequest.Type.UPDATE && operation.getQuantity() > 0) {
+                        line.setQuantity(operation.getQuantity());
+                    } else {
+                        cart.removeItem(line);
+                        removed.put(line.getProduct().getId(), line);
+                    }
+                    yield line.getId();
+                }
+            };
+            results.add(cartItemId != null
+                    ? CartOperationResult.applied(i, operation.getType(), cartItemId)
+                    : CartOperationResult.failed(i, operation.getType(),
+                            operation.getType() == CartOperationRequest.Type.ADD
+                                    ? "Product not found" : "Cart item not found"));
+        }
+        return new CartBatchResponse(convertToResponse(cart, bumpVersion(cart)), results);
+    }
+
+    /**
+     * Two bulk statements however many lines the cart has
+     * Changes that loaded the cart before fail their version check and are retried on the empty cart
+     */
+    @Override
+    @Transactional
+    public void clear(Long userId) {
+        cartRepository.incrementVersionByUserId(userId);
+        cartItemRepository.deleteAllByUserId(userId);
+    }
+
+    /**
+     * Nothing to do, every change was committed when it was made
+     */
+    @Override
+    public void flush(Long userId) {
+    }
+
+    /**
+     * Helper method: add a product to the loaded cart, or increase its quantity if it is already there
+     * A line of the product removed earlier in the batch is put back instead of creating a new one
+     * Returns the id of the line
+     */
+    private Long addLine(Cart cart, Product product, int quantity, Map<Long, CartItem> removed) {
+        CartItem existingItem = findLineForProduct(cart, product.getId());
+        if (existingItem != null) {
+            // Product already in cart - increase quantity
+            existingItem.setQuantity(existingItem.getQuantity() + quantity);
+            return existingItem.getId();
+        }
+        CartItem removedItem = removed.remove(product.getId());
+        if (removedItem != null) {
+            // Back in the collection before the flush, so orphanRemoval doesn't delete it
+            removedItem.setQuantity(quantity);
+            cart.addItem(removedItem);
+            return removedItem.getId();
+        }
+        // New product - create new cart item (the id comes from the sequence, the INSERT waits for the flush)
+        CartItem newItem = CartItem.builder()
+                .cart(cart)
+                .product(product)
+                .quantity(quantity)
+                .build();
+        cart.addItem(newItem);
+        return cartItemRepository.save(newItem).getId();
+    }
+
+    /**
+     * Helper method: set a line's quantity, removing the line if it is 0 or less
+     */
+    private Long updateLine(Cart cart, Long cartItemId, int quantity) {
+        if (quantity <= 0) {
+            return removeLine(cart, cartItemId);
+        }
+        CartItem cartItem = findOwnLine(cart, cartItemId);
+        cartItem.setQuantity(quantity);
+        return cartItemId;
+    }
+
+    /**
+     * Helper method: remove a line; orphanRemoval deletes the row
+     */
+    private Long removeLine(Cart cart, Long cartItemId) {
+        cart.removeItem(findOwnLine(cart, cartItemId));
+        return cartItemId;
+    }
+
+    private CartItem findLineForProduct(Cart cart, Long productId) {
+        for (CartItem item : cart.getItems()) {
+            if (item.getProduct().getId().equals(productId)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method: find a line of the loaded cart
+     * Lines of other users' carts are simply not found
+     */
+    private CartItem findOwnLine(Cart cart, Long cartItemId) {
+        CartItem item = findLine(cart, cartItemId);
+        if (item == null) {
+            throw new RuntimeException("Cart item not found");
+        }
+        return item;
+    }
+
+    private CartItem findLine(Cart cart, Long cartItemId) {
+        for (CartItem item : cart.getItems()) {
+            if (cartItemId.equals(item.getId())) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method: load the cart for a change, checking the client's expected version (If-Match)
+     */
+    private Cart getCartForChange(Long userId, Long expectedVersion) {
+        Cart cart = getOrCreateCart(userId);
+        if (expectedVersion != null && !expectedVersion.equals(cart.getVersion())) {
+            throw versionMismatch(cart);
+        }
+        return cart;
+    }
+
+    /**
+     * Helper method: move the loaded cart on to its next version (compare-and-set on carts.version)
+     * Returns the new version
+     */
+    private long bumpVersion(Cart cart) {
+        if (cartRepository.bumpVersion(cart.getId(), cart.getVersion()) == 0) {
+            throw new ObjectOptimisticLockingFailureException(Cart.class, cart.getId());
+        }
+        return cart.getVersion() + 1;
+    }
+
+    private PreconditionFailedException versionMismatch(Cart cart) {
+        return new PreconditionFailedException("Cart has changed, it is now at version " + cart.getVersion(),
+                cart.getVersion());
+    }
+
+    /**
+     * Helper method: Get cart or create if it doesn't exist
+     * Items and their products come with the cart, so rendering it needs no extra queries
+     */
+    private Cart getOrCreateCart(Long userId) {
+        return cartRepository.findWithItemsByUserId(userId)
+                .orElseGet(() -> {
+                    User user = userRepository.findById(userId)
+                            .orElseThrow(() -> new RuntimeException("User not found"));
+                    Cart newCart = Cart.builder()
+                            .user(user)
+                            .build();
+                    return cartRepository.save(newCart);
+                });
+    }
+
+    /**
+     * Helper method: Convert Cart entity to CartResponse DTO
+     * Package-private so the JMH benchmarks can call it directly
+     */
+    CartResponse convertToResponse(Cart cart) {
+        return convertToResponse(cart, cart.getVersion());
+    }
+
+    /**
+     * Helper method: render a cart changed in this transaction
+     * The version is passed in: the entity still holds the version it was loaded with
+     */
+    private CartResponse convertToResponse(Cart cart, Long version) {
+        List<CartItemResponse> itemResponses = cart.getItems().stream()
+                .map(this::convertItemToResponse)
+                .collect(Collectors.toList());
+
+        // Calculate total
+        BigDecimal total = itemResponses.stream()
+                .map(CartItemResponse::getSubtotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        // Calculate item count
+        Integer itemCount = cart.getItems().stream()
+                .mapToInt(CartItem::getQuantity)
+                .sum();
+
+        return CartResponse.builder()
+                .id(cart.getId())
+                .items(itemResponses)
+                .total(total)
+                .itemCount(itemCount)
+                .version(version)
+                .build();
+    }
+
+    /**
+     * Helper method: Convert CartItem entity to CartItemResponse DTO
+     */
+    private CartItemResponse convertItemToResponse(CartItem item) {
+        return CartItemResponse.builder()
+                .id(item.getId())
+                .productId(item.getProduct().getId())
+                .productName(item.getProduct().getName())
+                .price(item.getProduct().getPrice())
+                .imageUrl(item.getProduct().getImageUrl())
+                .quantity(item.getQuantity())
+                .subtotal(item.getSubtotal())
+                .build();
+    }
+}
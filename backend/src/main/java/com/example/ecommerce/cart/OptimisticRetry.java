@@ -0,0 +1,64 @@
+package com.example.ecommerce.cart;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Retry policy for optimistic locking conflicts
+ *
+ * Runs an action (its own transaction) again when it fails with an
+ * OptimisticLockingFailureException, up to maxAttempts in total. Between
+ * attempts it sleeps a random time between 0 and
+ * min(maxBackoff, initialBackoff * 2^(retry - 1)) ("full jitter"), so
+ * requests that collided once don't collide again in lockstep.
+ * Anything else, and the last conflict, is thrown to the caller.
+ */
+public class OptimisticRetry {
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    public OptimisticRetry(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Retry attempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    /**
+     * @param onRetry called with the retry number (1, 2, ...) before each retry
+     */
+    public <T> T execute(Supplier<T> action, IntConsumer onRetry) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                onRetry.accept(attempt);
+                sleep(attempt, e);
+            }
+        }
+    }
+
+    private void sleep(int retry, OptimisticLockingFailureException conflict) {
+        long cap = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(retry - 1, 20));
+        if (cap <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(cap + 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.ecommerce.cart;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out ids from a database sequence, one block per nextval
+ *
+ * Works like Hibernate's pooled optimizer, which the entities use on the same
+ * sequences: a sequence that steps by blockSize reserves the block
+ * (value - blockSize + 1 .. value) for whoever called nextval, so ids taken
+ * here never collide with ids Hibernate takes. blockSize must equal the
+ * sequence's INCREMENT BY (50, see V3__sequence_ids.sql).
+ */
+class SequenceBlockAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nextValueSql;
+    private final int blockSize;
+
+    // A lock, not synchronized: nextval is I/O and must not pin a virtual thread's carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long last = -1;
+
+    SequenceBlockAllocator(JdbcTemplate jdbcTemplate, String sequenceName, int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nextValueSql = "SELECT nextval('" + sequenceName + "')";
+        this.blockSize = blockSize;
+    }
+
+    long nextId() {
+        lock.lock();
+        try {
+            if (next > last) {
+                Long value = jdbcTemplate.queryForObject(nextValueSql, Long.class);
+                last = value;
+                next = value - blockSize + 1;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
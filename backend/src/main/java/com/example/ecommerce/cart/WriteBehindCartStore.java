@@ -0,0 +1,782 @@
+package com.example.ecommerce.cart;
+
+import com.example.ecommerce.dto.CartBatchResponse;
+import com.example.ecommerce.dto.CartItemResponse;
+import com.example.ecommerce.dto.CartOperationRequest;
+import com.example.ecommerce.dto.CartOperationResult;
+import com.example.ecommerce.dto.CartResponse;
+import com.example.ecommerce.dto.ProductResponse;
+import com.example.ecommerce.exception.PreconditionFailedException;
+import com.example.ecommerce.repository.UserRepository;
+import com.example.ecommerce.service.ProductService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * In-memory cart store with write-behind persistence (app.cart.store=memory)
+ *
+ * Reads and changes are served from memory. Changed lines are only marked
+ * dirty; every app.cart.flush-interval the dirty state of all carts is written
+ * to carts / cart_items with JDBC batches in one transaction, so rapid changes
+ * to the same line coalesce into a single upsert. New carts and lines get ids
+ * from the entities' sequences up front (SequenceBlockAllocator), so they
+ * keep the same id once they reach the database.
+ *
+ * Durability:
+ * - An acknowledged change reaches the database within one flush interval.
+ *   If the process dies (crash, kill -9) before that, the change is lost;
+ *   the database then still holds the cart as of the previous flush.
+ * - A graceful shutdown flushes everything first.
+ * - Order creation flushes the user's cart before its transaction starts
+ *   (flush), and clearing it after an order is part of the order's
+ *   transaction (clear). A flush that was already under way when the cart
+ *   was cleared does not write the cleared lines back (see clear).
+ * - A failed flush leaves the changes dirty, they are retried on the next tick.
+ * - A line whose product was deleted before the line was written can never be
+ *   (cart_items.product_id references products): the flush drops it instead,
+ *   as the cart already leaves it out when rendered.
+ * - The memory copy is authoritative, so every request for a user's cart must
+ *   reach the same instance: run one instance, or route users stickily.
+ *
+ * Carts without pending changes are dropped from memory after
+ * app.cart.idle-timeout and reloaded from the database when next used.
+ *
+ * Changes to one cart are serialized by its lock, so they never conflict;
+ * the cart version is checked (If-Match) and moved on under that lock and
+ * written to carts.version with the next flush.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cart.store", havingValue = "memory")
+public class WriteBehindCartStore implements CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String LOAD_SQL = "SELECT c.id AS cart_id, c.version AS cart_version, ci.id AS item_id, "
+            + "ci.product_id, ci.quantity "
+            + "FROM carts c LEFT JOIN cart_items ci ON ci.cart_id = c.id WHERE c.user_id = ? ORDER BY ci.id";
+    private static final String UPSERT_CART_SQL = "INSERT INTO carts (id, user_id, version) VALUES (?, ?, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET version = EXCLUDED.version";
+    private static final String DELETE_ITEM_SQL = "DELETE FROM cart_items WHERE id = ?";
+    private static final String UPSERT_ITEM_SQL = "INSERT INTO cart_items (id, cart_id, product_id, quantity) "
+            + "VALUES (?, ?, ?, ?) ON CONFLICT (id) DO UPDATE SET quantity = EXCLUDED.quantity, "
+            + "version = cart_items.version + 1";
+    private static final String LOCK_PRODUCTS_SQL = "SELECT id FROM products WHERE id = ANY (?) FOR KEY SHARE";
+    private static final String CLEAR_SQL = "DELETE FROM cart_items WHERE cart_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate flushTransaction;
+    private final ProductService productService;
+    private final UserRepository userRepository;
+    private final SequenceBlockAllocator cartIds;
+    private final SequenceBlockAllocator itemIds;
+    private final long idleTimeoutMillis;
+
+    private final Map<Long, CartState> carts = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyUserIds = ConcurrentHashMap.newKeySet();
+    // One scheduled (or shutdown) flush at a time; single-cart flushes only wait for their own cart
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Timer flushTimer;
+    private final Counter cartsFlushed;
+    private final Counter flushFailures;
+    private final Counter linesDropped;
+
+    public WriteBehindCartStore(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ProductService productService,
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.cart.idle-timeout:30m}") Duration idleTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.productService = productService;
+        this.userRepository = userRepository;
+        this.cartIds = new SequenceBlockAllocator(jdbcTemplate, "carts_seq", ID_BLOCK_SIZE);
+        this.itemIds = new SequenceBlockAllocator(jdbcTemplate, "cart_items_seq", ID_BLOCK_SIZE);
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.flushTimer = meterRegistry.timer("app.carts.flush");
+        this.cartsFlushed = meterRegistry.counter("app.carts.flushed");
+        this.flushFailures = meterRegistry.counter("app.carts.flush.failures");
+        this.linesDropped = meterRegistry.counter("app.carts.lines.dropped");
+        Gauge.builder("app.carts.memory.size", this, WriteBehindCartStore::size)
+                .description("Carts held in memory")
+                .register(meterRegistry);
+        Gauge.builder("app.carts.memory.dirty", this, WriteBehindCartStore::dirtyCount)
+                .description("Carts with changes not written to the database yet")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public CartResponse getCart(Long userId) {
+        return render(withCart(userId, CartState::lines));
+    }
+
+    @Override
+    public CartResponse addItem(Long userId, Long productId, int quantity, Long expectedVersion) {
+        // Fails with "Product not found" before anything changes
+        productService.getProductById(productId);
+        return render(withCart(userId, cart -> {
+            cart.checkVersion(expectedVersion);
+            addLine(cart, productId, quantity);
+            markChanged(cart);
+            return cart.lines();
+        }));
+    }
+
+    @Override
+    public CartResponse updateItem(Long userId, Long cartItemId, int quantity, Long expectedVersion) {
+        return render(withCart(userId, cart -> {
+            cart.checkVersion(expectedVersion);
+            updateLine(cart, cartItemId, quantity);
+            markChanged(cart);
+            return cart.lines();
+        }));
+    }
+
+    @Override
+    public CartResponse removeItem(Long userId, Long cartItemId, Long expectedVersion) {
+        return render(withCart(userId, cart -> {
+            cart.checkVersion(expectedVersion);
+            removeLine(cart, cartItemId);
+            markChanged(cart);
+            return cart.lines();
+        }));
+    }
+
+    /**
+     * All operations run under one hold of the cart lock, so other requests see
+     * the batch as a whole; the next flush writes the net result
+     */
+    @Override
+    public CartBatchResponse applyBatch(Long userId, List<CartOperationRequest> operations, Long expectedVersion) {
+        List<Long> productIds = new ArrayList<>();
+        for (CartOperationRequest operation : operations) {
+            if (operation.getType() == CartOperationRequest.Type.ADD) {
+                productIds.add(operation.getProductId());
+            }
+        }
+        Set<Long> existingProducts = new HashSet<>();
+        for (ProductResponse product : productService.getProductsByIds(productIds)) {
+            existingProducts.add(product.getId());
+        }
+
+        List<CartOperationResult> results = new ArrayList<>(operations.size());
+        CartView view = withCart(userId, cart -> {
+            cart.checkVersion(expectedVersion);
+            for (int i = 0; i < operations.size(); i++) {
+                CartOperationRequest operation = operations.get(i);
+                try {
+                    Long cartItemId = switch (operation.getType()) {
+                        case ADD -> {
+                            if (!existingProducts.contains(operation.getProductId())) {
+                                throw new RuntimeException("Product not found");
+                            }
+                            yield addLine(cart, operation.getProductId(), operation.getQuantity());
+                        }
+                        case UPDATE -> updateLine(cart, operation.getCartItemId(), operation.getQuantity());
+                        case REMOVE -> removeLine(cart, operation.getCartItemId());
+                    };
+                    results.add(CartOperationResult.applied(i, operation.getType(), cartItemId));
+                } catch (RuntimeException e) {
+                    results.add(CartOperationResult.failed(i, operation.getType(), e.getMessage()));
+                }
+            }
+            markChanged(cart);
+            return cart.lines();
+        });
+        return new CartBatchResponse(render(view), results);
+    }
+
+    /**
+     * Delete the lines in the caller's transaction, forget them in memory once it commits
+     * Expects the cart to have been flushed before the caller's transaction (see OrderService);
+     * flushing here would deadlock, the caller holds the carts row lock. Lines added in
+     * memory since then were not part of the order and are dropped with the rest.
+     *
+     * A background flush may have taken a snapshot of those lines and be waiting for the
+     * carts row lock. The clear moves the cart's clear generation on when it starts and
+     * again when the transaction completes, so that snapshot is stale by the time it gets
+     * the lock and write() skips its lines instead of inserting them again.
+     */
+    @Override
+    public void clear(Long userId) {
+        CartState cart = withCart(userId, state -> {
+            state.clearing = true;
+            state.clearGeneration++;
+            return state;
+        });
+        try {
+            jdbcTemplate.update(CLEAR_SQL, cart.cartId);
+        } catch (RuntimeException e) {
+            finishClear(cart, false);
+            throw e;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    finishClear(cart, status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            finishClear(cart, true);
+        }
+    }
+
+    /**
+     * Writes on the caller's thread in a transaction of its own, so it must be called
+     * before the caller opens one: inside it, the flush would need a second connection
+     */
+    @Override
+    public void flush(Long userId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cart flush must run before the caller's transaction starts");
+        }
+        CartState cart = carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+        cart.writeLock.lock();
+        try {
+            if (dirtyUserIds.remove(userId)) {
+                write(List.of(cart.snapshot()));
+            }
+        } finally {
+            cart.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Write every dirty cart in one transaction, then drop idle carts from memory
+     * If the batch fails, the carts are retried one by one so a single bad cart
+     * can't hold back all the others
+     * A cart that is being flushed by an order right now is left for the next tick
+     */
+    @Scheduled(fixedDelayString = "${app.cart.flush-interval:1s}")
+    public void flushDirty() {
+        flushLock.lock();
+        List<CartState> locked = new ArrayList<>();
+        try {
+            List<Snapshot> batch = new ArrayList<>();
+            for (Long userId : List.copyOf(dirtyUserIds)) {
+                CartState cart = carts.get(userId);
+                if (cart == null) {
+                    dirtyUserIds.remove(userId);
+                    continue;
+                }
+                if (!cart.writeLock.tryLock()) {
+                    continue;
+                }
+                locked.add(cart);
+                if (dirtyUserIds.remove(userId)) {
+                    batch.add(cart.snapshot());
+                }
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    write(batch);
+                } catch (RuntimeException e) {
+                    log.warn("Batched flush of {} carts failed, retrying them one by one: {}", batch.size(), e.getMessage());
+                    // The failed write put the changes back; take each cart's changes again
+                    for (Snapshot failed : batch) {
+                        CartState cart = failed.cart;
+                        if (!dirtyUserIds.remove(cart.userId)) {
+                            continue;
+                        }
+                        try {
+                            write(List.of(cart.snapshot()));
+                        } catch (RuntimeException single) {
+                            log.error("Could not flush cart {}, will retry", cart.cartId, single);
+                        }
+                    }
+                }
+            }
+            evictIdle();
+        } finally {
+            for (CartState cart : locked) {
+                cart.writeLock.unlock();
+            }
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushDirty();
+        if (!dirtyUserIds.isEmpty()) {
+            log.error("{} carts could not be written before shutdown, their recent changes are lost", dirtyUserIds.size());
+        }
+    }
+
+    public int size() {
+        return carts.size();
+    }
+
+    public int dirtyCount() {
+        return dirtyUserIds.size();
+    }
+
+    /**
+     * Helper method: write snapshots in one transaction; on failure put their changes back as dirty
+     * The caller holds the carts' write locks
+     */
+    private void write(List<Snapshot> snapshots) {
+        List<Object[]> cartUpserts = new ArrayList<>();
+        for (Snapshot snapshot : snapshots) {
+            cartUpserts.add(new Object[]{snapshot.cart.cartId, snapshot.cart.userId, snapshot.version});
+        }
+        List<Snapshot> stale = new ArrayList<>();
+        Map<Line, CartState> dropped = new HashMap<>();
+        try {
+            flushTimer.record(() -> flushTransaction.executeWithoutResult(status -> {
+                // The carts rows first: this waits for an order holding one of them, and a cart
+                // cleared by that order shows up as stale below
+                jdbcTemplate.batchUpdate(UPSERT_CART_SQL, cartUpserts);
+                List<Snapshot> current = new ArrayList<>(snapshots.size());
+                for (Snapshot snapshot : snapshots) {
+                    if (snapshot.cart.isStale(snapshot)) {
+                        stale.add(snapshot);
+                    } else {
+                        current.add(snapshot);
+                    }
+                }
+                Set<Long> products = lockProducts(current);
+                List<Object[]> deletes = new ArrayList<>();
+                List<Object[]> upserts = new ArrayList<>();
+                for (Snapshot snapshot : current) {
+                    for (Long itemId : snapshot.deletedItemIds) {
+                        deletes.add(new Object[]{itemId});
+                    }
+                    for (Line line : snapshot.changedLines) {
+                        if (products.contains(line.productId)) {
+                            upserts.add(new Object[]{line.id, snapshot.cart.cartId, line.productId, line.quantity});
+                        } else {
+                            dropped.put(line, snapshot.cart);
+                        }
+                    }
+                }
+                // Deletes before upserts: a product removed and added again gets a new line id
+                // and must not hit the (cart_id, product_id) unique constraint
+                jdbcTemplate.batchUpdate(DELETE_ITEM_SQL, deletes);
+                jdbcTemplate.batchUpdate(UPSERT_ITEM_SQL, upserts);
+            }));
+            cartsFlushed.increment(snapshots.size() - stale.size());
+            dropped.forEach((line, cart) -> {
+                log.info("Dropped line {} of cart {}: product {} no longer exists", line.id, cart.cartId, line.productId);
+                cart.drop(line);
+            });
+            linesDropped.increment(dropped.size());
+            // Changes made after the clear are still in memory; write them on the next flush
+            for (Snapshot snapshot : stale) {
+                snapshot.cart.restore(snapshot);
+                dirtyUserIds.add(snapshot.cart.userId);
+            }
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            for (Snapshot snapshot : snapshots) {
+                snapshot.cart.restore(snapshot);
+                dirtyUserIds.add(snapshot.cart.userId);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Helper method: of the products of the snapshots' changed lines, the ones that still exist
+     * FOR KEY SHARE keeps them from being deleted until the lines are written
+     */
+    private Set<Long> lockProducts(List<Snapshot> snapshots) {
+        Set<Long> productIds = new HashSet<>();
+        for (Snapshot snapshot : snapshots) {
+            for (Line line : snapshot.changedLines) {
+                productIds.add(line.productId);
+            }
+        }
+        if (productIds.isEmpty()) {
+            return productIds;
+        }
+        return new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(LOCK_PRODUCTS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", productIds.toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getLong(1)));
+    }
+
+    private void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleTimeoutMillis;
+        carts.values().removeIf(cart -> cart.evictIfIdle(idleSince, dirtyUserIds));
+    }
+
+    /**
+     * Helper method: end a clear; if it committed, forget the lines (already gone from the database)
+     */
+    private void finishClear(CartState cart, boolean committed) {
+        cart.lock.lock();
+        try {
+            if (committed) {
+                cart.linesByProduct.clear();
+                cart.changedItemIds.clear();
+                cart.deletedItemIds.clear();
+                // The next flush only writes the new version
+                markChanged(cart);
+            }
+            cart.clearGeneration++;
+            cart.clearing = false;
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    /**
+     * Helper method: add a product to the cart (under its lock), or increase its quantity
+     * Returns the id of the line
+     */
+    private Long addLine(CartState cart, Long productId, int quantity) {
+        Line line = cart.linesByProduct.get(productId);
+        if (line != null) {
+            line.quantity += quantity;
+        } else {
+            line = new Line(itemIds.nextId(), productId, quantity);
+            cart.linesByProduct.put(productId, line);
+        }
+        cart.changedItemIds.add(line.id);
+        return line.id;
+    }
+
+    /**
+     * Helper method: set a line's quantity (under the cart's lock), removing it if 0 or less
+     */
+    private Long updateLine(CartState cart, Long cartItemId, int quantity) {
+        if (quantity <= 0) {
+            return removeLine(cart, cartItemId);
+        }
+        Line line = cart.findOwnLine(cartItemId);
+        line.quantity = quantity;
+        cart.changedItemIds.add(line.id);
+        return cartItemId;
+    }
+
+    private Long removeLine(CartState cart, Long cartItemId) {
+        cart.remove(cart.findOwnLine(cartItemId));
+        return cartItemId;
+    }
+
+    private void markDirty(CartState cart) {
+        dirtyUserIds.add(cart.userId);
+    }
+
+    /**
+     * Helper method: a change was applied (under the cart's lock), move the version on and mark the cart dirty
+     */
+    private void markChanged(CartState cart) {
+        cart.version++;
+        markDirty(cart);
+    }
+
+    /**
+     * Helper method: run an action on the user's cart under its lock, loading the cart if needed
+     * Retries if the cart was evicted between the lookup and taking the lock
+     */
+    private <T> T withCart(Long userId, Function<CartState, T> action) {
+        while (true) {
+            CartState cart = carts.get(userId);
+            if (cart == null) {
+                CartState loaded = load(userId);
+                cart = carts.putIfAbsent(userId, loaded);
+                if (cart == null) {
+                    cart = loaded;
+                    if (loaded.pendingCartInsert) {
+                        markDirty(loaded);
+                    }
+                }
+            }
+            cart.lock.lock();
+            try {
+                if (!cart.evicted) {
+                    cart.lastAccess = System.currentTimeMillis();
+                    return action.apply(cart);
+                }
+            } finally {
+                cart.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Helper method: read a cart from the database, or start a new one (written on the next flush)
+     */
+    private CartState load(Long userId) {
+        List<Long> cartId = new ArrayList<>(1);
+        long[] version = new long[1];
+        List<Line> lines = new ArrayList<>();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            if (cartId.isEmpty()) {
+                cartId.add(rs.getLong("cart_id"));
+                version[0] = rs.getLong("cart_version");
+            }
+            long itemId = rs.getLong("item_id");
+            if (!rs.wasNull()) {
+                lines.add(new Line(itemId, rs.getLong("product_id"), rs.getInt("quantity")));
+            }
+        }, userId);
+        if (!cartId.isEmpty()) {
+            return new CartState(cartId.get(0), userId, version[0], false, lines);
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found");
+        }
+        return new CartState(cartIds.nextId(), userId, 0, true, lines);
+    }
+
+    /**
+     * Helper method: build the response from product snapshots (ProductService cache)
+     * Lines whose product no longer exists are left out
+     */
+    private CartResponse render(CartView view) {
+        List<Long> productIds = new ArrayList<>(view.lines.size());
+        for (Line line : view.lines) {
+            productIds.add(line.productId);
+        }
+        Map<Long, ProductResponse> products = new HashMap<>();
+        for (ProductResponse product : productService.getProductsByIds(productIds)) {
+            products.put(product.getId(), product);
+        }
+
+        List<CartItemResponse> items = new ArrayList<>(view.lines.size());
+        BigDecimal total = BigDecimal.ZERO;
+        int itemCount = 0;
+        for (Line line : view.lines) {
+            ProductResponse product = products.get(line.productId);
+            if (product == null) {
+                continue;
+            }
+            BigDecimal subtotal = product.getPrice().multiply(new BigDecimal(line.quantity));
+            items.add(CartItemResponse.builder()
+                    .id(line.id)
+                    .productId(product.getId())
+                    .productName(product.getName())
+                    .price(product.getPrice())
+                    .imageUrl(product.getImageUrl())
+                    .quantity(line.quantity)
+                    .subtotal(subtotal)
+                    .build());
+            total = total.add(subtotal);
+            itemCount += line.quantity;
+        }
+        return CartResponse.builder()
+                .id(view.cartId)
+                .items(items)
+                .total(total)
+                .itemCount(itemCount)
+                .version(view.version)
+                .build();
+    }
+
+    /**
+     * One cart line; mutated only under the owning cart's lock
+     */
+    private static final class Line {
+        private final long id;
+        private final long productId;
+        private int quantity;
+
+        private Line(long id, long productId, int quantity) {
+            this.id = id;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        private Line copy() {
+            return new Line(id, productId, quantity);
+        }
+    }
+
+    /**
+     * Immutable copy of a cart's lines, rendered outside the lock
+     */
+    private record CartView(Long cartId, long version, List<Line> lines) {}
+
+    /**
+     * The changes of one cart taken for a flush; the cart row itself is always (re)written with its version
+     */
+    private record Snapshot(CartState cart, long version, long clearGeneration,
+                            List<Long> deletedItemIds, List<Line> changedLines) {}
+
+    /**
+     * A cart in memory plus what changed since the last flush
+     * A ReentrantLock rather than synchronized, so virtual threads waiting on a busy cart don't pin their carrier
+     */
+    private static final class CartState {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Held from taking a snapshot until it is written, so the snapshots of a cart are written in order
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final Long cartId;
+        private final Long userId;
+        private final Map<Long, Line> linesByProduct = new LinkedHashMap<>();
+        private final Set<Long> changedItemIds = new LinkedHashSet<>();
+        private final Set<Long> deletedItemIds = new LinkedHashSet<>();
+        // New cart, not in the database yet: dirty from the start so the next flush inserts it
+        private final boolean pendingCartInsert;
+        private long version;
+        // Moved on when a clear starts and when it ends; a snapshot from another generation is stale
+        private long clearGeneration;
+        private boolean clearing;
+        private boolean evicted;
+        private long lastAccess = System.currentTimeMillis();
+
+        private CartState(Long cartId, Long userId, long version, boolean pendingCartInsert, List<Line> lines) {
+            this.cartId = cartId;
+            this.userId = userId;
+            this.version = version;
+            this.pendingCartInsert = pendingCartInsert;
+            for (Line line : lines) {
+                linesByProduct.put(line.productId, line);
+            }
+        }
+
+        private Line findOwnLine(Long cartItemId) {
+            for (Line line : linesByProduct.values()) {
+                if (line.id == cartItemId) {
+                    return line;
+                }
+            }
+            // Lines of other users' carts are simply not found here
+            throw new RuntimeException("Cart item not found");
+        }
+
+        /**
+         * If-Match: fail unless the cart is at the version the client expects (null: any)
+         */
+        private void checkVersion(Long expectedVersion) {
+            if (expectedVersion != null && expectedVersion != version) {
+                throw new PreconditionFailedException("Cart has changed, it is now at version " + version, version);
+            }
+        }
+
+        private void remove(Line line) {
+            linesByProduct.remove(line.productId);
+            changedItemIds.remove(line.id);
+            deletedItemIds.add(line.id);
+        }
+
+        /**
+         * Forget a line that could not be written, unless it was replaced since
+         */
+        private void drop(Line line) {
+            lock.lock();
+            try {
+                Line current = linesByProduct.get(line.productId);
+                if (current != null && current.id == line.id) {
+                    linesByProduct.remove(line.productId);
+                    changedItemIds.remove(line.id);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private CartView lines() {
+            List<Line> copies = new ArrayList<>(linesByProduct.size());
+            for (Line line : linesByProduct.values()) {
+                copies.add(line.copy());
+            }
+            return new CartView(cartId, version, copies);
+        }
+
+        /**
+         * Take the pending changes (coalesced: only the latest quantity of each changed line)
+         */
+        private Snapshot snapshot() {
+            lock.lock();
+            try {
+                List<Line> changed = new ArrayList<>(changedItemIds.size());
+                for (Line line : linesByProduct.values()) {
+                    if (changedItemIds.contains(line.id)) {
+                        changed.add(line.copy());
+                    }
+                }
+                Snapshot snapshot = new Snapshot(this, version, clearGeneration, List.copyOf(deletedItemIds), changed);
+                changedItemIds.clear();
+                deletedItemIds.clear();
+                return snapshot;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * True if the cart was cleared, or is being cleared, since the snapshot was taken
+         */
+        private boolean isStale(Snapshot snapshot) {
+            lock.lock();
+            try {
+                return clearing || clearGeneration != snapshot.clearGeneration;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Put back the changes of a snapshot that could not be written
+         * Lines changed or removed again since then keep their newer state
+         */
+        private void restore(Snapshot snapshot) {
+            lock.lock();
+            try {
+                for (Line line : snapshot.changedLines) {
+                    Line current = linesByProduct.get(line.productId);
+                    if (current != null && current.id == line.id) {
+                        changedItemIds.add(line.id);
+                    }
+                }
+                deletedItemIds.addAll(snapshot.deletedItemIds);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean evictIfIdle(long idleSince, Set<Long> dirtyUserIds) {
+            lock.lock();
+            try {
+                if (lastAccess < idleSince && !dirtyUserIds.contains(userId)) {
+                    evicted = true;
+                }
+                return evicted;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.ecommerce.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Async Configuration
+ * Enables @Async; with spring.threads.virtual.enabled=true Spring Boot's
+ * application task executor runs this work on virtual threads
+ * Also enables @Scheduled (Stripe webhook queue poller, order event outbox dispatcher)
+ */
+@Configuration
+@EnableAsync
+@EnableScheduling
+public class AsyncConfig {
+}
@@ -0,0 +1,42 @@
+package com.example.ecommerce.config;
+
+import com.example.ecommerce.jdbc.SqlStatementRecorder;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource Proxy Configuration
+ * Wraps the application DataSource so every statement is timed by SqlStatementRecorder
+ * (replaces spring.jpa.show-sql); result sets are proxied too, to count rows read
+ */
+@Configuration
+public class DataSourceProxyConfig {
+
+    /**
+     * Static, and the recorder is looked up lazily, so this post-processor doesn't
+     * force early creation of the metrics beans
+     */
+    @Bean
+    public static BeanPostProcessor dataSourceProxyPostProcessor(ObjectProvider<SqlStatementRecorder> recorder) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    SqlStatementRecorder listener = recorder.getObject();
+                    return ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(listener)
+                            .methodListener(listener)
+                            .proxyResultSet()
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
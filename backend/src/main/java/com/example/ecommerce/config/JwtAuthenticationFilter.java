@@ -1,7 +1,10 @@
 package com.example.ecommerce.config;
 
+import com.example.ecommerce.cache.PrincipalCache;
 import com.example.ecommerce.service.CustomUserDetailsService;
 import com.example.ecommerce.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,10 +27,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
 
-    public JwtAuthenticationFilter(JwtService jwtService, CustomUserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService, CustomUserDetailsService userDetailsService,
+                                   PrincipalCache principalCache) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -50,14 +56,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         // Extract JWT token (remove "Bearer " prefix)
         jwt = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt);
+
+        // Parse and verify once; the claims are reused for the rest of the request
+        final Claims claims;
+        try {
+            claims = jwtService.parseToken(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            // Invalid or expired token - continue unauthenticated
+            filterChain.doFilter(request, response);
+            return;
+        }
+        request.setAttribute(JwtService.CLAIMS_ATTRIBUTE, claims);
+        userEmail = claims.getSubject();
 
         // If token contains username and user is not already authenticated
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
+            // Cached, so most requests don't hit the users table
+            UserDetails userDetails = principalCache.get(userEmail, userDetailsService::loadUserByUsername);
 
             // Validate token
-            if (jwtService.isTokenValid(jwt, userDetails.getUsername())) {
+            if (jwtService.isTokenValid(claims, userDetails.getUsername())) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
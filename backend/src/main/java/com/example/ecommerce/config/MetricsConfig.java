@@ -0,0 +1,140 @@
+package com.example.ecommerce.config;
+
+import com.example.ecommerce.cache.CacheStats;
+import com.example.ecommerce.cache.PrincipalCache;
+import com.example.ecommerce.cache.ProductCatalogCache;
+import com.example.ecommerce.cache.RefreshingValue;
+import com.example.ecommerce.outbox.OutboxDispatcher;
+import com.example.ecommerce.service.JwtService;
+import com.example.ecommerce.service.StripeService;
+import com.example.ecommerce.service.StripeWebhookProcessor;
+import com.example.ecommerce.stripe.StripeGateway;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Metrics Configuration
+ * Enables @Timed on the services and publishes the in-process caches, the Stripe
+ * gateway, the webhook queue and the order event outbox as Micrometer meters (scraped at /actuator/prometheus)
+ * The queue and outbox depth/lag gauges are backed by COUNT queries, so their readings are
+ * reused for app.metrics.backlog-refresh however often (and by however many scrapers) they are read
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder cacheMetrics(ProductCatalogCache catalogCache, PrincipalCache principalCache,
+                                    JwtService jwtService) {
+        return registry -> {
+            bindCache(registry, "catalog.products", catalogCache, c -> c.stats().get("products"));
+            bindCache(registry, "catalog.listings", catalogCache, c -> c.stats().get("listings"));
+            bindCache(registry, "principals", principalCache, PrincipalCache::stats);
+            bindCache(registry, "verified.tokens", jwtService, JwtService::verifiedTokenCacheStats);
+        };
+    }
+
+    @Bean
+    public MeterBinder stripeGatewayMetrics(StripeGateway gateway) {
+        return registry -> {
+            Gauge.builder("app.stripe.circuit.open", gateway, g -> g.getCircuitState().ordinal())
+                    .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                    .register(registry);
+            Gauge.builder("app.stripe.in.flight", gateway, StripeGateway::getInFlight)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder webhookQueueMetrics(StripeWebhookProcessor processor, StripeService stripeService,
+                                           @Value("${app.metrics.backlog-refresh:15s}") Duration refresh) {
+        // Held by the binder (a bean), since meters only hold their source weakly
+        RefreshingValue<Backlog> backlog = new RefreshingValue<>(refresh,
+                () -> new Backlog(processor.queueDepth(), processor.oldestPendingAgeMillis()));
+        return registry -> {
+            Gauge.builder("app.webhooks.queue.depth", backlog, b -> b.get().depth())
+                    .description("Webhook events received but not applied yet")
+                    .register(registry);
+            Gauge.builder("app.webhooks.queue.lag", backlog, b -> b.get().oldestAgeMillis() / 1000.0)
+                    .description("Age of the oldest unapplied webhook event")
+                    .baseUnit("seconds")
+                    .register(registry);
+            Gauge.builder("app.webhooks.in.flight", processor, StripeWebhookProcessor::getInFlight)
+                    .register(registry);
+            FunctionCounter.builder("app.webhooks.processed", processor, StripeWebhookProcessor::getProcessedCount)
+                    .tag("outcome", "processed")
+                    .register(registry);
+            FunctionCounter.builder("app.webhooks.processed", processor, StripeWebhookProcessor::getRetryCount)
+                    .tag("outcome", "retried")
+                    .register(registry);
+            FunctionCounter.builder("app.webhooks.processed", processor, StripeWebhookProcessor::getGaveUpCount)
+                    .tag("outcome", "failed")
+                    .register(registry);
+            FunctionCounter.builder("app.webhooks.duplicates", stripeService, StripeService::getDuplicateDeliveries)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder outboxMetrics(OutboxDispatcher dispatcher,
+                                     @Value("${app.metrics.backlog-refresh:15s}") Duration refresh) {
+        RefreshingValue<Backlog> backlog = new RefreshingValue<>(refresh,
+                () -> new Backlog(dispatcher.pendingCount(), dispatcher.oldestPendingAgeMillis()));
+        return registry -> {
+            Gauge.builder("app.outbox.depth", backlog, b -> b.get().depth())
+                    .description("Order events written but not delivered yet")
+                    .register(registry);
+            Gauge.builder("app.outbox.lag", backlog, b -> b.get().oldestAgeMillis() / 1000.0)
+                    .description("Age of the oldest undelivered order event")
+                    .baseUnit("seconds")
+                    .register(registry);
+            FunctionCounter.builder("app.outbox.dispatched", dispatcher, OutboxDispatcher::getDispatchedCount)
+                    .tag("outcome", "dispatched")
+                    .register(registry);
+            FunctionCounter.builder("app.outbox.dispatched", dispatcher, OutboxDispatcher::getRetryCount)
+                    .tag("outcome", "retried")
+                    .register(registry);
+            FunctionCounter.builder("app.outbox.dispatched", dispatcher, OutboxDispatcher::getGaveUpCount)
+                    .tag("outcome", "failed")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Helper method: size gauge plus hit/miss/eviction counters for one cache
+     * Meters hold their source weakly, so the source is the (singleton) bean, not a lambda
+     */
+    private <T> void bindCache(MeterRegistry registry, String name, T source, Function<T, CacheStats> stats) {
+        Gauge.builder("app.cache.size", source, s -> stats.apply(s).getSize())
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("app.cache.requests", source, s -> stats.apply(s).getHits())
+                .tag("cache", name).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("app.cache.requests", source, s -> stats.apply(s).getMisses())
+                .tag("cache", name).tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("app.cache.evictions", source, s -> stats.apply(s).getEvictions())
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    /**
+     * One reading of a queue: how many items wait, and how long the oldest has been waiting
+     */
+    private record Backlog(long depth, long oldestAgeMillis) {
+    }
+}
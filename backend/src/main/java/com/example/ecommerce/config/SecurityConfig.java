@@ -1,5 +1,8 @@
 package com.example.ecommerce.config;
 
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -32,12 +35,15 @@ public class SecurityConfig {
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final UserDetailsService userDetailsService;
     private final PasswordEncoder passwordEncoder;
+    private final int managementPort;
 
     public SecurityConfig(JwtAuthenticationFilter jwtAuthFilter, UserDetailsService userDetailsService,
-                         PasswordEncoder passwordEncoder) {
+                         PasswordEncoder passwordEncoder,
+                         @Value("${management.server.port:-1}") int managementPort) {
         this.jwtAuthFilter = jwtAuthFilter;
         this.userDetailsService = userDetailsService;
         this.passwordEncoder = passwordEncoder;
+        this.managementPort = managementPort;
     }
 
     @Bean
@@ -46,8 +52,14 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable()) // Disable CSRF for stateless JWT
                 .cors(cors -> cors.configurationSource(corsConfigurationSource())) // Enable CORS
                 .authorizeHttpRequests(auth -> auth
+                        // Async re-dispatch of an already authorized request (e.g. streaming exports)
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Public endpoints - no authentication required
                         .requestMatchers("/api/auth/**", "/", "/error").permitAll()
+                        // Health checks, and Prometheus scraping on the (internal) management port only
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        .requestMatchers(this::isScrapeOnManagementPort).permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         // Public product browsing - GET requests only
                         .requestMatchers("/api/products", "/api/products/**").permitAll()
                         // Stripe webhook - must be public for Stripe to call it (MUST BE BEFORE /api/checkout/**)
@@ -68,6 +80,14 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Should management.server.port ever be unset (actuator on the API port), scraping needs an admin token
+     */
+    private boolean isScrapeOnManagementPort(HttpServletRequest request) {
+        return managementPort > 0 && request.getLocalPort() == managementPort
+                && "/actuator/prometheus".equals(request.getRequestURI());
+    }
+
     @Bean
     @SuppressWarnings("deprecation")
     public AuthenticationProvider authenticationProvider() {
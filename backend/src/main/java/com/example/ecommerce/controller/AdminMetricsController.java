@@ -0,0 +1,114 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.cache.CacheStats;
+import com.example.ecommerce.cache.PrincipalCache;
+import com.example.ecommerce.cache.ProductCatalogCache;
+import com.example.ecommerce.dto.OutboxStats;
+import com.example.ecommerce.dto.StripeGatewayStats;
+import com.example.ecommerce.dto.WebhookQueueStats;
+import com.example.ecommerce.jdbc.SqlQueryStats;
+import com.example.ecommerce.jdbc.SqlStatementRecorder;
+import com.example.ecommerce.outbox.OutboxDispatcher;
+import com.example.ecommerce.service.JwtService;
+import com.example.ecommerce.service.StripeWebhookProcessor;
+import com.example.ecommerce.stripe.StripeGateway;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin Metrics Controller
+ * Exposes in-process cache and queue counters for the back office
+ */
+@RestController
+@RequestMapping("/api/admin/metrics")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminMetricsController {
+
+    private final ProductCatalogCache catalogCache;
+    private final PrincipalCache principalCache;
+    private final JwtService jwtService;
+    private final StripeWebhookProcessor webhookProcessor;
+    private final StripeGateway stripeGateway;
+    private final SqlStatementRecorder sqlStatementRecorder;
+    private final OutboxDispatcher outboxDispatcher;
+
+    public AdminMetricsController(ProductCatalogCache catalogCache, PrincipalCache principalCache,
+                                  JwtService jwtService, StripeWebhookProcessor webhookProcessor,
+                                  StripeGateway stripeGateway, SqlStatementRecorder sqlStatementRecorder,
+                                  OutboxDispatcher outboxDispatcher) {
+        this.catalogCache = catalogCache;
+        this.principalCache = principalCache;
+        this.jwtService = jwtService;
+        this.webhookProcessor = webhookProcessor;
+        this.stripeGateway = stripeGateway;
+        this.sqlStatementRecorder = sqlStatementRecorder;
+        this.outboxDispatcher = outboxDispatcher;
+    }
+
+    /**
+     * GET /api/admin/metrics/catalog-cache
+     * Hit/miss/eviction counters of the product catalog cache
+     */
+    @GetMapping("/catalog-cache")
+    public ResponseEntity<Map<String, CacheStats>> getCatalogCacheStats() {
+        return ResponseEntity.ok(catalogCache.stats());
+    }
+
+    /**
+     * GET /api/admin/metrics/principal-cache
+     * Principal cache counters: hits are users-table lookups saved, misses are lookups made
+     */
+    @GetMapping("/principal-cache")
+    public ResponseEntity<CacheStats> getPrincipalCacheStats() {
+        return ResponseEntity.ok(principalCache.stats());
+    }
+
+    /**
+     * GET /api/admin/metrics/token-cache
+     * Verified JWT cache counters: hits are signature verifications saved
+     */
+    @GetMapping("/token-cache")
+    public ResponseEntity<CacheStats> getTokenCacheStats() {
+        return ResponseEntity.ok(jwtService.verifiedTokenCacheStats());
+    }
+
+    /**
+     * GET /api/admin/metrics/webhook-queue
+     * Stripe webhook queue depth, lag and retry counters
+     */
+    @GetMapping("/webhook-queue")
+    public ResponseEntity<WebhookQueueStats> getWebhookQueueStats() {
+        return ResponseEntity.ok(webhookProcessor.stats());
+    }
+
+    /**
+     * GET /api/admin/metrics/outbox
+     * Order event outbox depth, lag and delivery counters
+     */
+    @GetMapping("/outbox")
+    public ResponseEntity<OutboxStats> getOutboxStats() {
+        return ResponseEntity.ok(outboxDispatcher.stats());
+    }
+
+    /**
+     * GET /api/admin/metrics/stripe-gateway
+     * Stripe client circuit state, bulkhead usage, outcome counters and latency
+     */
+    @GetMapping("/stripe-gateway")
+    public ResponseEntity<StripeGatewayStats> getStripeGatewayStats() {
+        return ResponseEntity.ok(stripeGateway.stats());
+    }
+
+    /**
+     * GET /api/admin/metrics/slow-queries?limit=20
+     * Slowest SQL statements since startup (by max time), with row counts and calling repository method
+     */
+    @GetMapping("/slow-queries")
+    public ResponseEntity<List<SqlQueryStats>> getSlowQueries(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(sqlStatementRecorder.slowest(Math.max(1, Math.min(limit, 200))));
+    }
+}
@@ -1,12 +1,19 @@
 package com.example.ecommerce.controller;
 
+import com.example.ecommerce.dto.OrderPageResponse;
 import com.example.ecommerce.dto.OrderResponse;
+import com.example.ecommerce.repository.OrderFilter;
+import com.example.ecommerce.service.OrderExportService;
 import com.example.ecommerce.service.OrderService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.time.LocalDateTime;
 import java.util.Map;
 
 /**
@@ -19,19 +26,56 @@ import java.util.Map;
 public class AdminOrderController {
 
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
 
-    public AdminOrderController(OrderService orderService) {
+    public AdminOrderController(OrderService orderService, OrderExportService orderExportService) {
         this.orderService = orderService;
+        this.orderExportService = orderExportService;
     }
 
     /**
-     * GET /api/admin/orders
-     * Get all orders from all users
+     * GET /api/admin/orders?status=&from=&to=&userId=&page=0&size=20
+     * Get one page of orders from all users, newest first
+     * from/to are ISO date-times (from inclusive, to exclusive)
      */
     @GetMapping
-    public ResponseEntity<List<OrderResponse>> getAllOrders() {
-        List<OrderResponse> orders = orderService.getAllOrders();
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<OrderPageResponse> getAllOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(required = false) Integer size) {
+        OrderFilter filter = new OrderFilter(status, from, to, userId);
+        return ResponseEntity.ok(orderService.getOrders(filter, page, size));
+    }
+
+    /**
+     * GET /api/admin/orders/export?format=csv|ndjson (same filters as the listing)
+     * Streams one row per order line; memory use does not grow with the number of orders
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "csv") String format) {
+        OrderFilter filter = new OrderFilter(status, from, to, userId);
+
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders.ndjson")
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .body(out -> orderExportService.exportNdjson(filter, out));
+        }
+        if ("csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders.csv")
+                    .contentType(MediaType.parseMediaType("text/csv"))
+                    .body(out -> orderExportService.exportCsv(filter, out));
+        }
+        throw new IllegalArgumentException("Unsupported export format: " + format + " (use csv or ndjson)");
     }
 
     /**
@@ -1,10 +1,13 @@
 package com.example.ecommerce.controller;
 
 import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CartBatchRequest;
+import com.example.ecommerce.dto.CartBatchResponse;
 import com.example.ecommerce.dto.CartResponse;
 import com.example.ecommerce.service.CartService;
 import com.example.ecommerce.service.CustomUserDetailsService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -12,6 +15,9 @@ import org.springframework.web.bind.annotation.*;
 /**
  * REST controller for cart operations
  * All endpoints require authentication
+ *
+ * Cart responses carry the cart version as ETag. Changes accept it back as If-Match
+ * and fail with 412 if the cart has changed since; without If-Match they always apply.
  */
 @RestController
 @RequestMapping("/api/cart")
@@ -32,7 +38,7 @@ public class CartController {
     public ResponseEntity<CartResponse> getCart(Authentication authentication) {
         Long userId = getUserIdFromAuth(authentication);
         CartResponse cart = cartService.getCart(userId);
-        return ResponseEntity.ok(cart);
+        return withETag(cart, cart);
     }
 
     /**
@@ -42,11 +48,12 @@ public class CartController {
     @PostMapping("/add")
     public ResponseEntity<CartResponse> addToCart(
             @Valid @RequestBody AddToCartRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             Authentication authentication
     ) {
         Long userId = getUserIdFromAuth(authentication);
-        CartResponse cart = cartService.addToCart(userId, request);
-        return ResponseEntity.ok(cart);
+        CartResponse cart = cartService.addToCart(userId, request, parseIfMatch(ifMatch));
+        return withETag(cart, cart);
     }
 
     /**
@@ -57,11 +64,12 @@ public class CartController {
     public ResponseEntity<CartResponse> updateCartItem(
             @PathVariable Long cartItemId,
             @RequestParam Integer quantity,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             Authentication authentication
     ) {
         Long userId = getUserIdFromAuth(authentication);
-        CartResponse cart = cartService.updateCartItem(userId, cartItemId, quantity);
-        return ResponseEntity.ok(cart);
+        CartResponse cart = cartService.updateCartItem(userId, cartItemId, quantity, parseIfMatch(ifMatch));
+        return withETag(cart, cart);
     }
 
     /**
@@ -71,11 +79,55 @@ public class CartController {
     @DeleteMapping("/remove/{cartItemId}")
     public ResponseEntity<CartResponse> removeFromCart(
             @PathVariable Long cartItemId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             Authentication authentication
     ) {
         Long userId = getUserIdFromAuth(authentication);
-        CartResponse cart = cartService.removeFromCart(userId, cartItemId);
-        return ResponseEntity.ok(cart);
+        CartResponse cart = cartService.removeFromCart(userId, cartItemId, parseIfMatch(ifMatch));
+        return withETag(cart, cart);
+    }
+
+    /**
+     * Apply several add/update/remove operations in one go
+     * POST /api/cart/batch
+     * Returns the resulting cart and one result per operation
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<CartBatchResponse> applyBatch(
+            @Valid @RequestBody CartBatchRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            Authentication authentication
+    ) {
+        Long userId = getUserIdFromAuth(authentication);
+        CartBatchResponse response = cartService.applyBatch(userId, request, parseIfMatch(ifMatch));
+        return withETag(response, response.getCart());
+    }
+
+    /**
+     * Helper method: read the expected cart version from If-Match ("7", W/"7"); null if absent or "*"
+     */
+    private Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.valueOf(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match must be a cart version (the cart's ETag)");
+        }
+    }
+
+    /**
+     * Helper method: 200 with the cart version as ETag
+     */
+    private <T> ResponseEntity<T> withETag(T body, CartResponse cart) {
+        return ResponseEntity.ok()
+                .eTag(String.valueOf(cart.getVersion()))
+                .body(body);
     }
 
     /**
@@ -5,6 +5,8 @@ import com.example.ecommerce.dto.CreateCheckoutSessionRequest;
 import com.example.ecommerce.service.CustomUserDetailsService;
 import com.example.ecommerce.service.StripeService;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -19,6 +21,8 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "http://localhost:3000")
 public class CheckoutController {
 
+    private static final Logger log = LoggerFactory.getLogger(CheckoutController.class);
+
     private final StripeService stripeService;
 
     public CheckoutController(StripeService stripeService) {
@@ -52,6 +56,8 @@ public class CheckoutController {
      * 
      * This endpoint is called by Stripe when payment events occur
      * Must be publicly accessible (no authentication required)
+     * Only verifies and queues the event, so Stripe gets its 200 right away;
+     * redeliveries of an already queued event are acknowledged as well
      * 
      * @param payload Raw webhook payload from Stripe
      * @param sigHeader Stripe signature header for verification
@@ -62,11 +68,11 @@ public class CheckoutController {
             @RequestHeader("Stripe-Signature") String sigHeader
     ) {
         try {
-            stripeService.handleWebhook(payload, sigHeader);
-            return ResponseEntity.ok("Webhook processed");
-        } catch (Exception e) {
-            System.err.println("Webhook error: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Webhook processing failed");
+            boolean queued = stripeService.handleWebhook(payload, sigHeader);
+            return ResponseEntity.ok(queued ? "Webhook received" : "Webhook already received");
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected webhook: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Webhook verification failed");
         }
     }
 
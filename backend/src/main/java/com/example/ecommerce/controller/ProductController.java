@@ -1,6 +1,8 @@
 package com.example.ecommerce.controller;
 
+import com.example.ecommerce.dto.ProductPageResponse;
 import com.example.ecommerce.dto.ProductResponse;
+import com.example.ecommerce.dto.ProductSearchResponse;
 import com.example.ecommerce.service.ProductService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -40,6 +42,34 @@ public class ProductController {
         return ResponseEntity.ok(productService.getAllProducts());
     }
 
+    /**
+     * Get one page of products (keyset pagination)
+     * GET /api/products/page?category=&sort=price&direction=asc&size=20&cursor=
+     */
+    @GetMapping("/page")
+    public ResponseEntity<ProductPageResponse> getProductPage(
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(productService.getProductPage(category, sort, direction, size, cursor));
+    }
+
+    /**
+     * Ranked product search with paging (also used for typeahead)
+     * GET /api/products/search?q=lapt&page=0&size=10
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ProductSearchResponse> searchProducts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(required = false) Integer size
+    ) {
+        return ResponseEntity.ok(productService.searchProducts(q, page, size));
+    }
+
     /**
      * Get product by ID
      * GET /api/products/{id}
@@ -0,0 +1,31 @@
+package com.example.ecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Request DTO for POST /api/cart/batch
+ * Operations are applied in list order
+ */
+public class CartBatchRequest {
+
+    public static final int MAX_OPERATIONS = 100;
+
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = MAX_OPERATIONS, message = "At most " + MAX_OPERATIONS + " operations per batch")
+    @Valid
+    private List<@NotNull(message = "Operations must not be null") CartOperationRequest> operations;
+
+    public CartBatchRequest() {}
+
+    public CartBatchRequest(List<CartOperationRequest> operations) {
+        this.operations = operations;
+    }
+
+    public List<CartOperationRequest> getOperations() { return operations; }
+    public void setOperations(List<CartOperationRequest> operations) { this.operations = operations; }
+}
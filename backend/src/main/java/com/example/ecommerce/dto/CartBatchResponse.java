@@ -0,0 +1,21 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * Response DTO for POST /api/cart/batch
+ * The cart after the whole batch, plus one result per operation (same order as the request)
+ */
+public class CartBatchResponse {
+    private final CartResponse cart;
+    private final List<CartOperationResult> results;
+
+    public CartBatchResponse(CartResponse cart, List<CartOperationResult> results) {
+        this.cart = cart;
+        this.results = results;
+    }
+
+    public CartResponse getCart() { return cart; }
+
+    public List<CartOperationResult> getResults() { return results; }
+}
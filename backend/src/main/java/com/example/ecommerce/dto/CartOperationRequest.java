@@ -0,0 +1,43 @@
+package com.example.ecommerce.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * One operation of a batch cart update (POST /api/cart/batch)
+ * ADD needs productId and quantity, UPDATE needs cartItemId and quantity
+ * (0 or less removes the line), REMOVE needs cartItemId
+ */
+public class CartOperationRequest {
+
+    public enum Type { ADD, UPDATE, REMOVE }
+
+    @NotNull(message = "Operation type is required")
+    private Type type;
+
+    private Long productId;
+
+    private Long cartItemId;
+
+    private Integer quantity;
+
+    public CartOperationRequest() {}
+
+    public CartOperationRequest(Type type, Long productId, Long cartItemId, Integer quantity) {
+        this.type = type;
+        this.productId = productId;
+        this.cartItemId = cartItemId;
+        this.quantity = quantity;
+    }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+
+    public Long getCartItemId() { return cartItemId; }
+    public void setCartItemId(Long cartItemId) { this.cartItemId = cartItemId; }
+
+    public Integer getQuantity() { return quantity; }
+    public void setQuantity(Integer quantity) { this.quantity = quantity; }
+}
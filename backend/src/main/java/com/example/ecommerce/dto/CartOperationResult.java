@@ -0,0 +1,44 @@
+package com.example.ecommerce.dto;
+
+/**
+ * Outcome of one operation of a batch cart update
+ * An operation that fails (unknown product, line not in the cart) is skipped,
+ * the others are still applied
+ */
+public class CartOperationResult {
+    private final int index;
+    private final CartOperationRequest.Type type;
+    private final boolean applied;
+    private final Long cartItemId; // line added / changed / removed
+    private final String error;
+
+    public CartOperationResult(int index, CartOperationRequest.Type type, boolean applied,
+                               Long cartItemId, String error) {
+        this.index = index;
+        this.type = type;
+        this.applied = applied;
+        this.cartItemId = cartItemId;
+        this.error = error;
+    }
+
+    public static CartOperationResult applied(int index, CartOperationRequest.Type type, Long cartItemId) {
+        return new CartOperationResult(index, type, true, cartItemId, null);
+    }
+
+    public static CartOperationResult failed(int index, CartOperationRequest.Type type, String error) {
+        return new CartOperationResult(index, type, false, null, error);
+    }
+
+    /**
+     * Position of the operation in the request
+     */
+    public int getIndex() { return index; }
+
+    public CartOperationRequest.Type getType() { return type; }
+
+    public boolean isApplied() { return applied; }
+
+    public Long getCartItemId() { return cartItemId; }
+
+    public String getError() { return error; }
+}
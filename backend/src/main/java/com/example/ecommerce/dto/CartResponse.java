@@ -12,14 +12,16 @@ public class CartResponse {
 	private List<CartItemResponse> items;
 	private BigDecimal total; // sum of all item subtotals
 	private Integer itemCount; // total number of items
+	private Long version; // cart version, also sent as the ETag
 
     public CartResponse() {}
 
-    public CartResponse(Long id, List<CartItemResponse> items, BigDecimal total, Integer itemCount) {
+    public CartResponse(Long id, List<CartItemResponse> items, BigDecimal total, Integer itemCount, Long version) {
         this.id = id;
         this.items = items;
         this.total = total;
         this.itemCount = itemCount;
+        this.version = version;
     }
 
     public Long getId() { return id; }
@@ -34,6 +36,9 @@ public class CartResponse {
     public Integer getItemCount() { return itemCount; }
     public void setItemCount(Integer itemCount) { this.itemCount = itemCount; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public static CartResponseBuilder builder() {
         return new CartResponseBuilder();
     }
@@ -43,14 +48,16 @@ public class CartResponse {
         private List<CartItemResponse> items;
         private BigDecimal total;
         private Integer itemCount;
+        private Long version;
 
         public CartResponseBuilder id(Long id) { this.id = id; return this; }
         public CartResponseBuilder items(List<CartItemResponse> items) { this.items = items; return this; }
         public CartResponseBuilder total(BigDecimal total) { this.total = total; return this; }
         public CartResponseBuilder itemCount(Integer itemCount) { this.itemCount = itemCount; return this; }
+        public CartResponseBuilder version(Long version) { this.version = version; return this; }
 
         public CartResponse build() {
-            return new CartResponse(id, items, total, itemCount);
+            return new CartResponse(id, items, total, itemCount, version);
         }
     }
 }
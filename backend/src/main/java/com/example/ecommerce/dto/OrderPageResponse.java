@@ -0,0 +1,62 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * Response DTO for one page of the admin order listing
+ */
+public class OrderPageResponse {
+    private List<OrderResponse> content;
+    private Integer page;
+    private Integer size;
+    private Long totalElements;
+    private Integer totalPages;
+
+    public OrderPageResponse() {}
+
+    public OrderPageResponse(List<OrderResponse> content, Integer page, Integer size,
+                             Long totalElements, Integer totalPages) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.totalPages = totalPages;
+    }
+
+    public List<OrderResponse> getContent() { return content; }
+    public void setContent(List<OrderResponse> content) { this.content = content; }
+
+    public Integer getPage() { return page; }
+    public void setPage(Integer page) { this.page = page; }
+
+    public Integer getSize() { return size; }
+    public void setSize(Integer size) { this.size = size; }
+
+    public Long getTotalElements() { return totalElements; }
+    public void setTotalElements(Long totalElements) { this.totalElements = totalElements; }
+
+    public Integer getTotalPages() { return totalPages; }
+    public void setTotalPages(Integer totalPages) { this.totalPages = totalPages; }
+
+    public static OrderPageResponseBuilder builder() {
+        return new OrderPageResponseBuilder();
+    }
+
+    public static class OrderPageResponseBuilder {
+        private List<OrderResponse> content;
+        private Integer page;
+        private Integer size;
+        private Long totalElements;
+        private Integer totalPages;
+
+        public OrderPageResponseBuilder content(List<OrderResponse> content) { this.content = content; return this; }
+        public OrderPageResponseBuilder page(Integer page) { this.page = page; return this; }
+        public OrderPageResponseBuilder size(Integer size) { this.size = size; return this; }
+        public OrderPageResponseBuilder totalElements(Long totalElements) { this.totalElements = totalElements; return this; }
+        public OrderPageResponseBuilder totalPages(Integer totalPages) { this.totalPages = totalPages; return this; }
+
+        public OrderPageResponse build() {
+            return new OrderPageResponse(content, page, size, totalElements, totalPages);
+        }
+    }
+}
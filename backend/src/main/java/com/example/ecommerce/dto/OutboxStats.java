@@ -0,0 +1,52 @@
+package com.example.ecommerce.dto;
+
+/**
+ * Point-in-time counters of the order event outbox
+ * Returned by GET /api/admin/metrics/outbox
+ */
+public class OutboxStats {
+    private final long pending;
+    private final long failed;
+    private final long oldestPendingAgeMillis;
+    private final long lastDispatchLagMillis;
+    private final long dispatched;
+    private final long retries;
+    private final long gaveUp;
+
+    public OutboxStats(long pending, long failed, long oldestPendingAgeMillis, long lastDispatchLagMillis,
+                       long dispatched, long retries, long gaveUp) {
+        this.pending = pending;
+        this.failed = failed;
+        this.oldestPendingAgeMillis = oldestPendingAgeMillis;
+        this.lastDispatchLagMillis = lastDispatchLagMillis;
+        this.dispatched = dispatched;
+        this.retries = retries;
+        this.gaveUp = gaveUp;
+    }
+
+    /**
+     * Events written but not delivered yet, including those waiting for a retry
+     */
+    public long getPending() { return pending; }
+
+    /**
+     * Events that exhausted their attempts and need a look
+     */
+    public long getFailed() { return failed; }
+
+    /**
+     * Age of the oldest event not delivered yet (0 when the outbox is empty)
+     */
+    public long getOldestPendingAgeMillis() { return oldestPendingAgeMillis; }
+
+    /**
+     * Written-to-delivered time of the most recently delivered event
+     */
+    public long getLastDispatchLagMillis() { return lastDispatchLagMillis; }
+
+    public long getDispatched() { return dispatched; }
+
+    public long getRetries() { return retries; }
+
+    public long getGaveUp() { return gaveUp; }
+}
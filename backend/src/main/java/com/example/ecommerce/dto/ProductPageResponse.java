@@ -0,0 +1,55 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * Response DTO for one page of the keyset-paginated product listing
+ * Pass nextCursor back as ?cursor= to get the following page
+ */
+public class ProductPageResponse {
+    private List<ProductResponse> items;
+    private String nextCursor; // null when this is the last page
+    private boolean hasNext;
+    private Integer size;
+
+    public ProductPageResponse() {}
+
+    public ProductPageResponse(List<ProductResponse> items, String nextCursor, boolean hasNext, Integer size) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+        this.size = size;
+    }
+
+    public List<ProductResponse> getItems() { return items; }
+    public void setItems(List<ProductResponse> items) { this.items = items; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public boolean isHasNext() { return hasNext; }
+    public void setHasNext(boolean hasNext) { this.hasNext = hasNext; }
+
+    public Integer getSize() { return size; }
+    public void setSize(Integer size) { this.size = size; }
+
+    public static ProductPageResponseBuilder builder() {
+        return new ProductPageResponseBuilder();
+    }
+
+    public static class ProductPageResponseBuilder {
+        private List<ProductResponse> items;
+        private String nextCursor;
+        private boolean hasNext;
+        private Integer size;
+
+        public ProductPageResponseBuilder items(List<ProductResponse> items) { this.items = items; return this; }
+        public ProductPageResponseBuilder nextCursor(String nextCursor) { this.nextCursor = nextCursor; return this; }
+        public ProductPageResponseBuilder hasNext(boolean hasNext) { this.hasNext = hasNext; return this; }
+        public ProductPageResponseBuilder size(Integer size) { this.size = size; return this; }
+
+        public ProductPageResponse build() {
+            return new ProductPageResponse(items, nextCursor, hasNext, size);
+        }
+    }
+}
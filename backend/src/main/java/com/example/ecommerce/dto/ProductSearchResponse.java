@@ -0,0 +1,62 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * Response DTO for one page of ranked product search results
+ */
+public class ProductSearchResponse {
+    private List<ProductResponse> items;
+    private Integer total; // number of matching products, a lower bound when truncated
+    private boolean truncated; // a short prefix matched too many terms, only the first ones were searched
+    private Integer page;
+    private Integer size;
+
+    public ProductSearchResponse() {}
+
+    public ProductSearchResponse(List<ProductResponse> items, Integer total, boolean truncated, Integer page,
+                                 Integer size) {
+        this.items = items;
+        this.total = total;
+        this.truncated = truncated;
+        this.page = page;
+        this.size = size;
+    }
+
+    public List<ProductResponse> getItems() { return items; }
+    public void setItems(List<ProductResponse> items) { this.items = items; }
+
+    public Integer getTotal() { return total; }
+    public void setTotal(Integer total) { this.total = total; }
+
+    public boolean isTruncated() { return truncated; }
+    public void setTruncated(boolean truncated) { this.truncated = truncated; }
+
+    public Integer getPage() { return page; }
+    public void setPage(Integer page) { this.page = page; }
+
+    public Integer getSize() { return size; }
+    public void setSize(Integer size) { this.size = size; }
+
+    public static ProductSearchResponseBuilder builder() {
+        return new ProductSearchResponseBuilder();
+    }
+
+    public static class ProductSearchResponseBuilder {
+        private List<ProductResponse> items;
+        private Integer total;
+        private boolean truncated;
+        private Integer page;
+        private Integer size;
+
+        public ProductSearchResponseBuilder items(List<ProductResponse> items) { this.items = items; return this; }
+        public ProductSearchResponseBuilder total(Integer total) { this.total = total; return this; }
+        public ProductSearchResponseBuilder truncated(boolean truncated) { this.truncated = truncated; return this; }
+        public ProductSearchResponseBuilder page(Integer page) { this.page = page; return this; }
+        public ProductSearchResponseBuilder size(Integer size) { this.size = size; return this; }
+
+        public ProductSearchResponse build() {
+            return new ProductSearchResponse(items, total, truncated, page, size);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.ecommerce.dto;
+
+/**
+ * Point-in-time counters of the Stripe API gateway
+ * Returned by GET /api/admin/metrics/stripe-gateway
+ */
+public class StripeGatewayStats {
+    private final String circuitState;
+    private final int inFlight;
+    private final int maxConcurrent;
+    private final long calls;
+    private final long successes;
+    private final long clientErrors;
+    private final long failures;
+    private final long bulkheadRejections;
+    private final long shortCircuits;
+    private final long averageLatencyMillis;
+    private final long maxLatencyMillis;
+
+    public StripeGatewayStats(String circuitState, int inFlight, int maxConcurrent, long calls,
+                              long successes, long clientErrors, long failures,
+                              long bulkheadRejections, long shortCircuits,
+                              long averageLatencyMillis, long maxLatencyMillis) {
+        this.circuitState = circuitState;
+        this.inFlight = inFlight;
+        this.maxConcurrent = maxConcurrent;
+        this.calls = calls;
+        this.successes = successes;
+        this.clientErrors = clientErrors;
+        this.failures = failures;
+        this.bulkheadRejections = bulkheadRejections;
+        this.shortCircuits = shortCircuits;
+        this.averageLatencyMillis = averageLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    /**
+     * CLOSED, OPEN or HALF_OPEN
+     */
+    public String getCircuitState() { return circuitState; }
+
+    public int getInFlight() { return inFlight; }
+
+    public int getMaxConcurrent() { return maxConcurrent; }
+
+    /**
+     * Calls that reached Stripe (excludes rejected ones)
+     */
+    public long getCalls() { return calls; }
+
+    public long getSuccesses() { return successes; }
+
+    /**
+     * Calls Stripe answered with a request error (e.g. invalid params); Stripe itself was healthy
+     */
+    public long getClientErrors() { return clientErrors; }
+
+    /**
+     * Timeouts, connection errors, 429 and 5xx answers
+     */
+    public long getFailures() { return failures; }
+
+    public long getBulkheadRejections() { return bulkheadRejections; }
+
+    /**
+     * Calls rejected without trying because the circuit was open
+     */
+    public long getShortCircuits() { return shortCircuits; }
+
+    public long getAverageLatencyMillis() { return averageLatencyMillis; }
+
+    public long getMaxLatencyMillis() { return maxLatencyMillis; }
+}
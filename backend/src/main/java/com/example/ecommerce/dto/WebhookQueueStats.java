@@ -0,0 +1,67 @@
+package com.example.ecommerce.dto;
+
+/**
+ * Point-in-time counters of the Stripe webhook queue
+ * Returned by GET /api/admin/metrics/webhook-queue
+ */
+public class WebhookQueueStats {
+    private final long pending;
+    private final long processing;
+    private final long failed;
+    private final int inFlight;
+    private final long oldestPendingAgeMillis;
+    private final long lastProcessingLagMillis;
+    private final long processed;
+    private final long retries;
+    private final long gaveUp;
+    private final long duplicateDeliveries;
+
+    public WebhookQueueStats(long pending, long processing, long failed, int inFlight,
+                             long oldestPendingAgeMillis, long lastProcessingLagMillis,
+                             long processed, long retries, long gaveUp, long duplicateDeliveries) {
+        this.pending = pending;
+        this.processing = processing;
+        this.failed = failed;
+        this.inFlight = inFlight;
+        this.oldestPendingAgeMillis = oldestPendingAgeMillis;
+        this.lastProcessingLagMillis = lastProcessingLagMillis;
+        this.processed = processed;
+        this.retries = retries;
+        this.gaveUp = gaveUp;
+        this.duplicateDeliveries = duplicateDeliveries;
+    }
+
+    /**
+     * Queue depth: events received but not applied yet
+     */
+    public long getDepth() { return pending + processing; }
+
+    public long getPending() { return pending; }
+
+    public long getProcessing() { return processing; }
+
+    /**
+     * Events that exhausted their attempts and need a look
+     */
+    public long getFailed() { return failed; }
+
+    public int getInFlight() { return inFlight; }
+
+    /**
+     * Age of the oldest event not applied yet (0 when the queue is empty)
+     */
+    public long getOldestPendingAgeMillis() { return oldestPendingAgeMillis; }
+
+    /**
+     * Receive-to-applied time of the most recently applied event
+     */
+    public long getLastProcessingLagMillis() { return lastProcessingLagMillis; }
+
+    public long getProcessed() { return processed; }
+
+    public long getRetries() { return retries; }
+
+    public long getGaveUp() { return gaveUp; }
+
+    public long getDuplicateDeliveries() { return duplicateDeliveries; }
+}
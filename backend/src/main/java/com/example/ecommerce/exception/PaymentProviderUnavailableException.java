@@ -0,0 +1,27 @@
+package com.example.ecommerce.exception;
+
+/**
+ * Exception thrown when Stripe can't be used right now (circuit open, bulkhead full,
+ * timeout or Stripe-side error); mapped to 503 so clients can retry later
+ */
+public class PaymentProviderUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PaymentProviderUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public PaymentProviderUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Suggested wait before retrying, 0 if unknown
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.ecommerce.exception;
+
+/**
+ * Exception thrown when a conditional request (If-Match) names a version that is no longer current
+ * Mapped to 412; the current version goes back as the ETag so the client can reload and retry
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    private final Long currentVersion;
+
+    public PreconditionFailedException(String message, Long currentVersion) {
+        super(message);
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * Version the resource is at now, null if unknown
+     */
+    public Long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.ecommerce.jdbc;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which repository method is running on the current thread, so the
+ * SQL it triggers can be attributed to it (e.g. "ProductRepository.findByCategory")
+ */
+@Aspect
+@Component
+public class RepositoryCallTracker {
+
+    private static final String REPOSITORY_PACKAGE = "com.example.ecommerce.repository";
+
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object track(ProceedingJoinPoint joinPoint) throws Throwable {
+        String caller = repositoryName(joinPoint.getThis()) + "." + joinPoint.getSignature().getName();
+        String previous = SqlContext.enterCaller(caller);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            SqlContext.restoreCaller(previous);
+        }
+    }
+
+    /**
+     * Helper method: our repository interface behind a proxy (inherited methods
+     * like findById are declared on Spring Data's interfaces, not ours)
+     */
+    private String repositoryName(Object proxy) {
+        return repositoryNames.computeIfAbsent(proxy.getClass(), type -> {
+            for (Class<?> candidate : AopProxyUtils.proxiedUserInterfaces(proxy)) {
+                if (candidate.getPackageName().startsWith(REPOSITORY_PACKAGE)) {
+                    return candidate.getSimpleName();
+                }
+            }
+            return type.getSimpleName();
+        });
+    }
+}
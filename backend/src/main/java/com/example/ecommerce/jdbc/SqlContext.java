@@ -0,0 +1,63 @@
+package com.example.ecommerce.jdbc;
+
+/**
+ * Per-thread SQL bookkeeping shared by the JDBC listener, the repository aspect
+ * and the request filter
+ *
+ * - the repository method currently running on this thread (statement attribution)
+ * - the number of statements executed since the request started
+ */
+public final class SqlContext {
+
+    static final String UNATTRIBUTED = "unattributed";
+
+    private static final ThreadLocal<String> CURRENT_CALLER = new ThreadLocal<>();
+    private static final ThreadLocal<int[]> STATEMENT_COUNT = new ThreadLocal<>();
+
+    private SqlContext() {}
+
+    /**
+     * Set the calling repository method, returning the previous one (restore it afterwards)
+     */
+    static String enterCaller(String caller) {
+        String previous = CURRENT_CALLER.get();
+        CURRENT_CALLER.set(caller);
+        return previous;
+    }
+
+    static void restoreCaller(String previous) {
+        if (previous == null) {
+            CURRENT_CALLER.remove();
+        } else {
+            CURRENT_CALLER.set(previous);
+        }
+    }
+
+    static String currentCaller() {
+        String caller = CURRENT_CALLER.get();
+        return caller == null ? UNATTRIBUTED : caller;
+    }
+
+    /**
+     * Start counting statements on this thread (start of a request)
+     */
+    static void startCounting() {
+        STATEMENT_COUNT.set(new int[1]);
+    }
+
+    /**
+     * Stop counting and return the number of statements since startCounting
+     */
+    static int stopCounting() {
+        int[] count = STATEMENT_COUNT.get();
+        STATEMENT_COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    static void statementExecuted() {
+        int[] count = STATEMENT_COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+}
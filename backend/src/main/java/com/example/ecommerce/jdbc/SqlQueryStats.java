@@ -0,0 +1,62 @@
+package com.example.ecommerce.jdbc;
+
+/**
+ * Aggregated timings of one SQL statement text
+ * Returned by GET /api/admin/metrics/slow-queries
+ */
+public class SqlQueryStats {
+
+    private final String sql;
+    private long executions;
+    private long totalMillis;
+    private long maxMillis;
+    private long maxRows;
+    private String lastCaller;
+
+    SqlQueryStats(String sql) {
+        this.sql = sql;
+    }
+
+    synchronized void record(long elapsedMillis, long rows, String caller) {
+        executions++;
+        totalMillis += elapsedMillis;
+        maxMillis = Math.max(maxMillis, elapsedMillis);
+        maxRows = Math.max(maxRows, rows);
+        lastCaller = caller;
+    }
+
+    /**
+     * Consistent copy for rendering and sorting
+     */
+    synchronized SqlQueryStats snapshot() {
+        SqlQueryStats copy = new SqlQueryStats(sql);
+        copy.executions = executions;
+        copy.totalMillis = totalMillis;
+        copy.maxMillis = maxMillis;
+        copy.maxRows = maxRows;
+        copy.lastCaller = lastCaller;
+        return copy;
+    }
+
+    public String getSql() { return sql; }
+
+    public long getExecutions() { return executions; }
+
+    public long getTotalMillis() { return totalMillis; }
+
+    public long getMaxMillis() { return maxMillis; }
+
+    public double getAverageMillis() {
+        return executions == 0 ? 0.0 : (double) totalMillis / executions;
+    }
+
+    /**
+     * Largest row count seen (rows read for queries, rows changed for updates)
+     */
+    public long getMaxRows() { return maxRows; }
+
+    /**
+     * Repository method of the most recent execution
+     */
+    public String getLastCaller() { return lastCaller; }
+}
@@ -0,0 +1,181 @@
+package com.example.ecommerce.jdbc;
+
+import com.example.ecommerce.cache.LruCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records every SQL statement that goes through the proxied DataSource
+ *
+ * Per statement: elapsed time, rows (rows changed for updates; for queries the rows
+ * read, counted via ResultSet.next() until the result set is closed or the thread's
+ * next query starts - an approximation when result sets are interleaved) and the
+ * repository method that issued it (see RepositoryCallTracker).
+ *
+ * Statements at or over the slow threshold are logged; all statements feed the
+ * app.jdbc.statements timer and a bounded per-SQL table behind the slow-queries endpoint.
+ */
+@Component
+public class SqlStatementRecorder implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementRecorder.class);
+
+    private static final int MAX_SQL_LENGTH = 4000;
+
+    private final MeterRegistry meterRegistry;
+    private final long slowThresholdMillis;
+    private final LruCache<String, SqlQueryStats> statsBySql;
+
+    // The query whose result set is currently being read on this thread
+    private final ThreadLocal<PendingQuery> pendingQuery = new ThreadLocal<>();
+
+    public SqlStatementRecorder(
+            MeterRegistry meterRegistry,
+            @Value("${app.jdbc.slow-query-threshold:200ms}") Duration slowThreshold,
+            @Value("${app.jdbc.tracked-statements:500}") int trackedStatements) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdMillis = slowThreshold.toMillis();
+        this.statsBySql = new LruCache<>(trackedStatements);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        SqlContext.statementExecuted();
+        String sql = sqlOf(queryInfoList);
+        String caller = SqlContext.currentCaller();
+
+        if (execInfo.getResult() instanceof ResultSet) {
+            finishPendingQuery();
+            pendingQuery.set(new PendingQuery(sql, execInfo.getElapsedTime(), caller));
+            return;
+        }
+        record(sql, execInfo.getElapsedTime(), rowsOf(execInfo.getResult()), caller);
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext context) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext context) {
+        if (!(context.getTarget() instanceof ResultSet)) {
+            return;
+        }
+        String method = context.getMethod().getName();
+        if ("next".equals(method)) {
+            PendingQuery pending = pendingQuery.get();
+            if (pending != null && Boolean.TRUE.equals(context.getResult())) {
+                pending.rows++;
+            }
+        } else if ("close".equals(method)) {
+            finishPendingQuery();
+        }
+    }
+
+    /**
+     * Record the query whose result set is still open on this thread, if any
+     */
+    void finishPendingQuery() {
+        PendingQuery pending = pendingQuery.get();
+        if (pending != null) {
+            pendingQuery.remove();
+            record(pending.sql, pending.elapsedMillis, pending.rows, pending.caller);
+        }
+    }
+
+    /**
+     * Slowest statements by maximum execution time
+     */
+    public List<SqlQueryStats> slowest(int limit) {
+        List<SqlQueryStats> snapshots = new ArrayList<>();
+        for (SqlQueryStats stats : statsBySql.values()) {
+            snapshots.add(stats.snapshot());
+        }
+        return snapshots.stream()
+                .sorted(Comparator.comparingLong(SqlQueryStats::getMaxMillis).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private void record(String sql, long elapsedMillis, long rows, String caller) {
+        Timer.builder("app.jdbc.statements")
+                .tag("caller", caller)
+                .register(meterRegistry)
+                .record(elapsedMillis, TimeUnit.MILLISECONDS);
+
+        SqlQueryStats stats;
+        synchronized (statsBySql) {
+            stats = statsBySql.get(sql);
+            if (stats == null) {
+                stats = new SqlQueryStats(sql);
+                statsBySql.put(sql, stats);
+            }
+        }
+        stats.record(elapsedMillis, rows, caller);
+
+        if (elapsedMillis >= slowThresholdMillis) {
+            log.warn("Slow SQL: {} ms, {} rows, from {}: {}", elapsedMillis, rows, caller, sql);
+        }
+    }
+
+    private String sqlOf(List<QueryInfo> queryInfoList) {
+        String sql = queryInfoList.size() == 1
+                ? queryInfoList.get(0).getQuery()
+                : queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH);
+    }
+
+    /**
+     * Helper method: rows changed according to an executeUpdate / executeBatch result
+     */
+    private long rowsOf(Object result) {
+        if (result instanceof Number number) {
+            return Math.max(0, number.longValue());
+        }
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) {
+                rows += Math.max(0, count);
+            }
+        }
+        return rows;
+    }
+
+    private static final class PendingQuery {
+        private final String sql;
+        private final long elapsedMillis;
+        private final String caller;
+        private long rows;
+
+        private PendingQuery(String sql, long elapsedMillis, String caller) {
+            this.sql = sql;
+            this.elapsedMillis = elapsedMillis;
+            this.caller = caller;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ecommerce.jdbc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Statement Count Filter
+ * Counts the SQL statements each request executes (app.jdbc.statements.per.request, by route)
+ * and logs requests over a threshold - a cheap way to catch N+1 regressions
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementCountFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final SqlStatementRecorder recorder;
+    private final int warnThreshold;
+
+    public StatementCountFilter(MeterRegistry meterRegistry, SqlStatementRecorder recorder,
+                                @Value("${app.jdbc.statements-per-request-warn-threshold:50}") int warnThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.recorder = recorder;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        SqlContext.startCounting();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            recorder.finishPendingQuery();
+            int statements = SqlContext.stopCounting();
+            String route = route(request);
+            DistributionSummary.builder("app.jdbc.statements.per.request")
+                    .tag("uri", route)
+                    .register(meterRegistry)
+                    .record(statements);
+            if (statements > warnThreshold) {
+                log.warn("{} {} executed {} SQL statements (possible N+1)", request.getMethod(), route, statements);
+            }
+        }
+    }
+
+    /**
+     * Helper method: the matched route pattern (bounded cardinality), not the raw path
+     */
+    private String route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+}
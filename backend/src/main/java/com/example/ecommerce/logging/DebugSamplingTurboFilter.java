@@ -0,0 +1,46 @@
+package com.example.ecommerce.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logback turbo filter that samples DEBUG/TRACE output of hot-path loggers
+ *
+ * For loggers under loggerPrefix only one in sampleEvery debug/trace events is
+ * let through (to the normal level check); the rest are dropped before a log
+ * event is even built. sampleEvery = 1 disables sampling. WARN and above are
+ * never sampled. Configured in logback-spring.xml.
+ */
+public class DebugSamplingTurboFilter extends TurboFilter {
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private String loggerPrefix = "com.example.ecommerce";
+    private long sampleEvery = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format,
+                              Object[] params, Throwable t) {
+        // format == null is an isDebugEnabled() style check, only real log calls are sampled
+        if (sampleEvery <= 1 || level == null || format == null
+                || level.toInt() > Level.DEBUG_INT
+                || level.toInt() < logger.getEffectiveLevel().toInt()
+                || !logger.getName().startsWith(loggerPrefix)) {
+            return FilterReply.NEUTRAL;
+        }
+        return counter.getAndIncrement() % sampleEvery == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    public void setSampleEvery(long sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+}
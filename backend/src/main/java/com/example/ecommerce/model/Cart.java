@@ -1,6 +1,7 @@
 package com.example.ecommerce.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.OptimisticLock;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -14,7 +15,8 @@ import java.util.List;
 public class Cart {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carts_seq")
+    @SequenceGenerator(name = "carts_seq", sequenceName = "carts_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -30,10 +32,20 @@ public class Cart {
      * A cart can have many items
      * CASCADE.ALL means when we delete a cart, all its items are deleted too
      * orphanRemoval = true means if we remove an item from the list, it's deleted from DB
+     * Excluded from optimistic locking: the cart stores bump the version themselves on every change
      */
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OptimisticLock(excluded = true)
     private List<CartItem> items = new ArrayList<>();
 
+    /**
+     * Moves on by one with every change to the cart or its lines
+     * Sent to clients as the cart's ETag (If-Match makes a change conditional)
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public Cart() {}
 
     public Cart(Long id, User user, List<CartItem> items) {
@@ -67,6 +79,8 @@ public class Cart {
     public List<CartItem> getItems() { return items; }
     public void setItems(List<CartItem> items) { this.items = items; }
 
+    public Long getVersion() { return version; }
+
     public static CartBuilder builder() {
         return new CartBuilder();
     }
@@ -7,13 +7,16 @@ import java.math.BigDecimal;
 /**
  * CartItem entity - represents a single product in a cart with quantity
  * Links Cart and Product together
+ * A cart has at most one line per product (unique cart_id, product_id)
  */
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items",
+        uniqueConstraints = @UniqueConstraint(name = "uk_cart_items_cart_product", columnNames = {"cart_id", "product_id"}))
 public class CartItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_items_seq")
+    @SequenceGenerator(name = "cart_items_seq", sequenceName = "cart_items_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -38,6 +41,13 @@ public class CartItem {
     @Column(nullable = false)
     private Integer quantity;
 
+    /**
+     * Optimistic lock: a line changed or removed by a concurrent request is not overwritten
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public CartItem() {}
 
     public CartItem(Long id, Cart cart, Product product, Integer quantity) {
@@ -66,6 +76,8 @@ public class CartItem {
     public Integer getQuantity() { return quantity; }
     public void setQuantity(Integer quantity) { this.quantity = quantity; }
 
+    public Long getVersion() { return version; }
+
     public static CartItemBuilder builder() {
         return new CartItemBuilder();
     }
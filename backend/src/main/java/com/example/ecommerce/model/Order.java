@@ -1,6 +1,7 @@
 package com.example.ecommerce.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -16,7 +17,8 @@ import java.util.List;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -29,8 +31,10 @@ public class Order {
     /**
      * One-to-many relationship with OrderItems
      * An order contains multiple products
+     * BatchSize lets a page of orders load all of its items in one query
      */
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     private List<OrderItem> items = new ArrayList<>();
 
     /**
@@ -52,6 +56,25 @@ public class Order {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    /**
+     * Stripe Checkout session last created for this order
+     * Reused by StripeService until it expires or the order contents change
+     */
+    @Column(name = "stripe_session_id")
+    private String stripeSessionId;
+
+    @Column(name = "stripe_session_url", length = 2048)
+    private String stripeSessionUrl;
+
+    @Column(name = "stripe_session_expires_at")
+    private LocalDateTime stripeSessionExpiresAt;
+
+    /**
+     * Hash of the order contents the session was created for
+     */
+    @Column(name = "stripe_session_fingerprint", length = 64)
+    private String stripeSessionFingerprint;
+
     /**
      * Shipping address
      */
@@ -100,6 +123,18 @@ public class Order {
     public String getShippingAddress() { return shippingAddress; }
     public void setShippingAddress(String shippingAddress) { this.shippingAddress = shippingAddress; }
 
+    public String getStripeSessionId() { return stripeSessionId; }
+    public void setStripeSessionId(String stripeSessionId) { this.stripeSessionId = stripeSessionId; }
+
+    public String getStripeSessionUrl() { return stripeSessionUrl; }
+    public void setStripeSessionUrl(String stripeSessionUrl) { this.stripeSessionUrl = stripeSessionUrl; }
+
+    public LocalDateTime getStripeSessionExpiresAt() { return stripeSessionExpiresAt; }
+    public void setStripeSessionExpiresAt(LocalDateTime stripeSessionExpiresAt) { this.stripeSessionExpiresAt = stripeSessionExpiresAt; }
+
+    public String getStripeSessionFingerprint() { return stripeSessionFingerprint; }
+    public void setStripeSessionFingerprint(String stripeSessionFingerprint) { this.stripeSessionFingerprint = stripeSessionFingerprint; }
+
     public static OrderBuilder builder() {
         return new OrderBuilder();
     }
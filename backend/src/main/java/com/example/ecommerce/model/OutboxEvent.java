@@ -0,0 +1,119 @@
+package com.example.ecommerce.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * OutboxEvent entity - an order domain event waiting to be delivered to the handlers
+ * Written in the same transaction as the order change, so an event exists if and only if the change committed
+ */
+@Entity
+@Table(name = "outbox_events")
+public class OutboxEvent {
+
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_DISPATCHED = "dispatched";
+    public static final String STATUS_FAILED = "failed";
+
+    /**
+     * Dedup key for handlers; not the delivery order, ids are handed out in blocks per instance
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", allocationSize = 50)
+    private Long id;
+
+    /**
+     * "OrderCreated", "OrderPaid" or "OrderShipped"
+     */
+    @Column(name = "event_type", nullable = false, length = 50)
+    private String eventType;
+
+    /**
+     * Id of the order the event is about
+     */
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    /**
+     * Position of the event among its order's events (1, 2, ...); the order they are delivered in
+     */
+    @Column(name = "aggregate_seq", nullable = false)
+    private Long aggregateSeq;
+
+    /**
+     * Event JSON (order id, user id, status, total)
+     */
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    /**
+     * "pending", "dispatched" or "failed" (gave up after max attempts)
+     */
+    @Column(nullable = false, length = 20)
+    private String status = STATUS_PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    /**
+     * Earliest time the next delivery attempt may run (backoff after failures)
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "dispatched_at")
+    private LocalDateTime dispatchedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    public OutboxEvent() {}
+
+    public OutboxEvent(String eventType, Long aggregateId, Long aggregateSeq, String payload,
+                       LocalDateTime createdAt) {
+        this.eventType = eventType;
+        this.aggregateId = aggregateId;
+        this.aggregateSeq = aggregateSeq;
+        this.payload = payload;
+        this.createdAt = createdAt;
+        this.nextAttemptAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+
+    public Long getAggregateId() { return aggregateId; }
+    public void setAggregateId(Long aggregateId) { this.aggregateId = aggregateId; }
+
+    public Long getAggregateSeq() { return aggregateSeq; }
+    public void setAggregateSeq(Long aggregateSeq) { this.aggregateSeq = aggregateSeq; }
+
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getDispatchedAt() { return dispatchedAt; }
+    public void setDispatchedAt(LocalDateTime dispatchedAt) { this.dispatchedAt = dispatchedAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+}
@@ -0,0 +1,87 @@
+package com.example.ecommerce.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * StripeWebhookEvent entity - a received Stripe webhook waiting to be applied
+ * The Stripe event id is the primary key, so a redelivered event is stored only once
+ */
+@Entity
+@Table(name = "stripe_webhook_events")
+public class StripeWebhookEvent {
+
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_PROCESSING = "processing";
+    public static final String STATUS_PROCESSED = "processed";
+    public static final String STATUS_FAILED = "failed";
+
+    /**
+     * Stripe event id (evt_...), used as the dedup key
+     */
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private String type;
+
+    /**
+     * Raw, signature-verified event JSON
+     */
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    /**
+     * "pending", "processing", "processed" or "failed" (gave up after max attempts)
+     */
+    @Column(nullable = false, length = 20)
+    private String status = STATUS_PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    /**
+     * Earliest time the next processing attempt may run (backoff after failures)
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    public StripeWebhookEvent() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public LocalDateTime getReceivedAt() { return receivedAt; }
+    public void setReceivedAt(LocalDateTime receivedAt) { this.receivedAt = receivedAt; }
+
+    public LocalDateTime getProcessedAt() { return processedAt; }
+    public void setProcessedAt(LocalDateTime processedAt) { this.processedAt = processedAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+}
@@ -1,5 +1,6 @@
 package com.example.ecommerce.model;
 
+import com.example.ecommerce.cache.UserCacheInvalidationListener;
 import jakarta.persistence.*;
 
 /**
@@ -8,10 +9,12 @@ import jakarta.persistence.*;
  */
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheInvalidationListener.class)
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     private String name;
@@ -25,6 +28,13 @@ public class User {
     @Column(nullable = false)
     private Role role;
 
+    /**
+     * The email as last read from or written to the database, so changing the
+     * email can also evict the principal cached under the old one
+     */
+    @Transient
+    private String storedEmail;
+
     public User() {}
 
     public User(Long id, String name, String email, String password, Role role) {
@@ -50,6 +60,9 @@ public class User {
     public Role getRole() { return role; }
     public void setRole(Role role) { this.role = role; }
 
+    public String getStoredEmail() { return storedEmail; }
+    public void setStoredEmail(String storedEmail) { this.storedEmail = storedEmail; }
+
     public static UserBuilder builder() {
         return new UserBuilder();
     }
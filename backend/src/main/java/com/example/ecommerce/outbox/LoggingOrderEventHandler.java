@@ -0,0 +1,21 @@
+package com.example.ecommerce.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default handler: logs every delivered order event
+ * Gives the event stream a trace in the logs until real consumers (mail, fulfilment) are plugged in
+ */
+@Component
+public class LoggingOrderEventHandler implements OrderEventHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingOrderEventHandler.class);
+
+    @Override
+    public void handle(OrderEvent event) {
+        log.info("Order event {} ({}) for order {}, status {}, total {}",
+                event.getEventId(), event.getType(), event.getOrderId(), event.getStatus(), event.getTotal());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.ecommerce.outbox;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An order domain event as delivered to the OrderEventHandlers
+ * The order fields are a snapshot taken when the event was written, not the order's current state
+ */
+public class OrderEvent {
+
+    public static final String ORDER_CREATED = "OrderCreated";
+    public static final String ORDER_PAID = "OrderPaid";
+    public static final String ORDER_SHIPPED = "OrderShipped";
+
+    private final Long eventId;
+    private final String type;
+    private final Long orderId;
+    private final Long userId;
+    private final String status;
+    private final BigDecimal total;
+    private final LocalDateTime occurredAt;
+
+    public OrderEvent(Long eventId, String type, Long orderId, Long userId, String status,
+                      BigDecimal total, LocalDateTime occurredAt) {
+        this.eventId = eventId;
+        this.type = type;
+        this.orderId = orderId;
+        this.userId = userId;
+        this.status = status;
+        this.total = total;
+        this.occurredAt = occurredAt;
+    }
+
+    /**
+     * Unique per event and stable across redeliveries; handlers use it to drop duplicates
+     */
+    public Long getEventId() { return eventId; }
+
+    public String getType() { return type; }
+
+    public Long getOrderId() { return orderId; }
+
+    public Long getUserId() { return userId; }
+
+    public String getStatus() { return status; }
+
+    public BigDecimal getTotal() { return total; }
+
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+}
@@ -0,0 +1,18 @@
+package com.example.ecommerce.outbox;
+
+/**
+ * Receives order domain events from the outbox
+ * Every bean implementing this interface gets every event (OutboxDispatcher)
+ *
+ * Delivery is at least once: an event is redelivered to all handlers if any handler
+ * throws, or if the dispatcher dies before recording the delivery. Handlers must
+ * therefore be idempotent, e.g. by remembering OrderEvent.getEventId().
+ * Events of one order arrive in the order they were written.
+ */
+public interface OrderEventHandler {
+
+    /**
+     * Throw to have the event retried later with backoff
+     */
+    void handle(OrderEvent event);
+}
@@ -0,0 +1,59 @@
+package com.example.ecommerce.outbox;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OutboxEvent;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes order domain events to the outbox (outbox_events)
+ *
+ * The event row is inserted in the caller's transaction, so it commits or rolls back
+ * together with the order change it describes: no event for a change that was rolled
+ * back, no change without its event. Delivery happens later, in OutboxDispatcher.
+ * Each event is numbered within its order (aggregate_seq), which is what keeps an
+ * order's events in order when several instances write them.
+ */
+@Component
+public class OrderEventPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+
+    public OrderEventPublisher(OutboxEventRepository outboxEventRepository, OrderRepository orderRepository,
+                               ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Queue an event about the order as it is now
+     * Must be called inside the transaction that changes the order
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(String type, Order order) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("orderId", order.getId());
+        payload.put("userId", order.getUserId());
+        payload.put("status", order.getStatus());
+        payload.put("total", order.getTotal());
+        try {
+            String json = objectMapper.writeValueAsString(payload);
+            long seq = orderRepository.nextEventSeq(order.getId());
+            outboxEventRepository.save(new OutboxEvent(type, order.getId(), seq, json, LocalDateTime.now()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + type + " event", e);
+        }
+    }
+}
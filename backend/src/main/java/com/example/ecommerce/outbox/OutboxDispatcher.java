@@ -0,0 +1,232 @@
+package com.example.ecommerce.outbox;
+
+import com.example.ecommerce.dto.OutboxStats;
+import com.example.ecommerce.model.OutboxEvent;
+import com.example.ecommerce.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers the order events written by OrderEventPublisher to every OrderEventHandler
+ *
+ * A scheduled poller locks a batch of due events with FOR UPDATE SKIP LOCKED, so
+ * several instances can poll the same table without delivering an event twice at
+ * the same time. The batch is delivered and marked in the same transaction that
+ * holds the locks; if the instance dies before it commits, the locks go away and
+ * the events are delivered again (at least once). A failed delivery is retried
+ * with exponential backoff, and after max-attempts the event is parked as failed.
+ * Each order's events are delivered in order: an event waits while an earlier one
+ * of the same order is pending (OutboxEventRepository.lockDueBatch).
+ *
+ * Handlers run while the batch is locked, so they should be quick; a slow handler
+ * delays the batch, not the order transactions that write events.
+ */
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    /**
+     * Bounds one poll so a large backlog does not hold the shared scheduler thread
+     */
+    private static final int MAX_BATCHES_PER_POLL = 20;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final List<OrderEventHandler> handlers;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Timer dispatchLag;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration retention;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong gaveUp = new AtomicLong();
+    private final AtomicLong lastDispatchLagMillis = new AtomicLong();
+
+    public OutboxDispatcher(
+            OutboxEventRepository outboxEventRepository,
+            List<OrderEventHandler> handlers,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.outbox.batch-size:100}") int batchSize,
+            @Value("${app.outbox.max-attempts:10}") int maxAttempts,
+            @Value("${app.outbox.initial-backoff:1s}") Duration initialBackoff,
+            @Value("${app.outbox.max-backoff:10m}") Duration maxBackoff,
+            @Value("${app.outbox.retention:7d}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.handlers = handlers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.dispatchLag = Timer.builder("app.outbox.dispatch.lag")
+                .description("Time from an order event being written to it being delivered")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.retention = retention;
+    }
+
+    /**
+     * Deliver due events, a batch per transaction, until a batch comes back short
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:500ms}")
+    public void poll() {
+        for (int i = 0; i < MAX_BATCHES_PER_POLL; i++) {
+            Integer delivered = transactionTemplate.execute(status -> dispatchBatch());
+            if (delivered == null || delivered < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Delivered events are kept for app.outbox.retention (for support and replays), then deleted
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.cleanup-interval:1h}")
+    public void purgeDispatched() {
+        int deleted = outboxEventRepository.deleteDispatchedBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Deleted {} delivered outbox events", deleted);
+        }
+    }
+
+    private int dispatchBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.lockDueBatch(LocalDateTime.now(), batchSize);
+        for (OutboxEvent event : batch) {
+            dispatch(event);
+        }
+        // The status changes of the batch are flushed (in one JDBC batch) when the transaction commits
+        return batch.size();
+    }
+
+    private void dispatch(OutboxEvent event) {
+        MDC.put("orderId", event.getAggregateId().toString());
+        try {
+            OrderEvent orderEvent = toOrderEvent(event);
+            for (OrderEventHandler handler : handlers) {
+                handler.handle(orderEvent);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            event.setStatus(OutboxEvent.STATUS_DISPATCHED);
+            event.setDispatchedAt(now);
+            event.setAttempts(event.getAttempts() + 1);
+            Duration lag = Duration.between(event.getCreatedAt(), now);
+            dispatchLag.record(lag);
+            lastDispatchLagMillis.set(lag.toMillis());
+            dispatched.incrementAndGet();
+        } catch (RuntimeException e) {
+            recordFailure(event, e);
+        } finally {
+            MDC.remove("orderId");
+        }
+    }
+
+    /**
+     * Schedule a retry with exponential backoff, or park the event as failed
+     * Parking releases the order's later events, which were waiting behind this one
+     */
+    private void recordFailure(OutboxEvent event, RuntimeException error) {
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        event.setLastError(truncate(String.valueOf(error.getMessage())));
+        if (attempts >= maxAttempts) {
+            event.setStatus(OutboxEvent.STATUS_FAILED);
+            gaveUp.incrementAndGet();
+            log.error("Giving up on outbox event {} ({}) after {} attempts",
+                    event.getId(), event.getEventType(), attempts, error);
+        } else {
+            event.setNextAttemptAt(LocalDateTime.now().plus(backoff(attempts)));
+            retries.incrementAndGet();
+            log.warn("Outbox event {} ({}) failed on attempt {}, will retry: {}",
+                    event.getId(), event.getEventType(), attempts, error.getMessage());
+        }
+    }
+
+    private OrderEvent toOrderEvent(OutboxEvent event) {
+        try {
+            JsonNode payload = objectMapper.readTree(event.getPayload());
+            JsonNode userId = payload.path("userId");
+            JsonNode total = payload.path("total");
+            return new OrderEvent(
+                    event.getId(),
+                    event.getEventType(),
+                    event.getAggregateId(),
+                    userId.isNumber() ? userId.asLong() : null,
+                    payload.path("status").asText(null),
+                    total.isNumber() ? total.decimalValue() : null,
+                    event.getCreatedAt());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable payload", e);
+        }
+    }
+
+    /**
+     * initialBackoff * 2^(attempts - 1), capped at maxBackoff
+     */
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    public OutboxStats stats() {
+        return new OutboxStats(
+                pendingCount(),
+                outboxEventRepository.countByStatus(OutboxEvent.STATUS_FAILED),
+                oldestPendingAgeMillis(),
+                lastDispatchLagMillis.get(),
+                dispatched.get(),
+                retries.get(),
+                gaveUp.get()
+        );
+    }
+
+    /**
+     * Events written but not delivered yet
+     */
+    public long pendingCount() {
+        return outboxEventRepository.countByStatus(OutboxEvent.STATUS_PENDING);
+    }
+
+    /**
+     * Age of the oldest event not delivered yet, 0 when the outbox is empty
+     */
+    public long oldestPendingAgeMillis() {
+        LocalDateTime oldest = outboxEventRepository.findOldestPendingCreatedAt();
+        return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis();
+    }
+
+    public long getDispatchedCount() { return dispatched.get(); }
+
+    public long getRetryCount() { return retries.get(); }
+
+    public long getGaveUpCount() { return gaveUp.get(); }
+}
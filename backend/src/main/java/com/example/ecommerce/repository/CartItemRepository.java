@@ -2,19 +2,54 @@ package com.example.ecommerce.repository;
 
 import com.example.ecommerce.model.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
-
 /**
  * Repository for CartItem entity
  */
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
-    
+
+    /**
+     * Add a product to a user's cart in one statement: insert the line, or add to its
+     * quantity if the product is already in the cart (unique (cart_id, product_id))
+     * Concurrent adds of the same product cannot create duplicate lines or lose quantity
+     * The cart's version moves on in the same statement, only if a line was written
+     * Returns 0 (and changes nothing) if the user has no cart yet, the product does not
+     * exist, or the cart is not at expectedVersion
+     *
+     * The cart row is locked first, so adds to one cart run one after another and the
+     * version check sees the latest committed version
+     *
+     * @param id id for the line if it is inserted; unused when the line already exists
+     * @param expectedVersion version the cart must be at, or -1 for any
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            WITH cart AS (
+                SELECT id FROM carts
+                WHERE user_id = :userId AND (:expectedVersion < 0 OR version = :expectedVersion)
+                FOR UPDATE
+            ), line AS (
+                INSERT INTO cart_items (id, cart_id, product_id, quantity)
+                SELECT :id, cart.id, p.id, :quantity
+                FROM cart JOIN products p ON p.id = :productId
+                ON CONFLICT (cart_id, product_id)
+                DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity, version = cart_items.version + 1
+                RETURNING cart_id
+            )
+            UPDATE carts SET version = version + 1 WHERE id IN (SELECT cart_id FROM line)
+            """, nativeQuery = true)
+    int upsertQuantity(@Param("id") long id, @Param("userId") Long userId, @Param("productId") Long productId,
+                       @Param("quantity") int quantity, @Param("expectedVersion") long expectedVersion);
+
     /**
-     * Find a cart item by cart ID and product ID
-     * Used to check if a product is already in the cart
+     * Delete every line of the user's cart in one statement
      */
-    Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN (SELECT c.id FROM Cart c WHERE c.user.id = :userId)")
+    int deleteAllByUserId(@Param("userId") Long userId);
 }
@@ -1,7 +1,11 @@
 package com.example.ecommerce.repository;
 
 import com.example.ecommerce.model.Cart;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -18,4 +22,42 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
      * Each user has only one cart
      */
     Optional<Cart> findByUserId(Long userId);
+
+    /**
+     * Find a cart by user ID together with its items and their products
+     * Loads everything needed to render the cart in a single query
+     */
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    Optional<Cart> findWithItemsByUserId(Long userId);
+
+    /**
+     * Lock the user's cart row for the rest of the transaction and return its id
+     * Order creation holds it while turning the cart into an order, so no cart change can slip in between
+     */
+    @Query(value = "SELECT id FROM carts WHERE user_id = :userId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockIdByUserId(@Param("userId") Long userId);
+
+    /**
+     * Move the user's cart on to its next version unconditionally
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Cart c SET c.version = c.version + 1 WHERE c.user.id = :userId")
+    int incrementVersionByUserId(@Param("userId") Long userId);
+
+    /**
+     * Create the user's cart unless it already exists (unique user_id)
+     * Safe against concurrent requests creating the same cart; returns 0 if it existed
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO carts (id, user_id) VALUES (:id, :userId) ON CONFLICT (user_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("id") long id, @Param("userId") Long userId);
+
+    /**
+     * Move the cart on to the next version if it is still at the given one (compare-and-set)
+     * Returns 0 if another change got there first; the row stays locked until the transaction ends
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Cart c SET c.version = c.version + 1 WHERE c.id = :id AND c.version = :version")
+    int bumpVersion(@Param("id") Long id, @Param("version") Long version);
 }
@@ -0,0 +1,65 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.Order;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Optional filters for the admin order listing and export
+ * Every field may be null, null fields are simply not applied
+ */
+public class OrderFilter {
+    private final String status;
+    private final LocalDateTime from; // inclusive
+    private final LocalDateTime to;   // exclusive
+    private final Long userId;
+
+    public OrderFilter(String status, LocalDateTime from, LocalDateTime to, Long userId) {
+        this.status = status;
+        this.from = from;
+        this.to = to;
+        this.userId = userId;
+    }
+
+    public String getStatus() { return status; }
+
+    public LocalDateTime getFrom() { return from; }
+
+    public LocalDateTime getTo() { return to; }
+
+    public Long getUserId() { return userId; }
+
+    /**
+     * Filters as a Specification for OrderRepository.findAll(spec, pageable)
+     */
+    public Specification<Order> toSpecification() {
+        return (root, query, cb) -> cb.and(toPredicates(cb, root).toArray(new Predicate[0]));
+    }
+
+    /**
+     * Filters as criteria predicates on an order path
+     * Shared by the paged listing and the streaming export
+     */
+    public List<Predicate> toPredicates(CriteriaBuilder cb, Path<Order> order) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (status != null && !status.isEmpty()) {
+            predicates.add(cb.equal(order.get("status"), status));
+        }
+        if (from != null) {
+            predicates.add(cb.greaterThanOrEqualTo(order.get("createdAt"), from));
+        }
+        if (to != null) {
+            predicates.add(cb.lessThan(order.get("createdAt"), to));
+        }
+        if (userId != null) {
+            predicates.add(cb.equal(order.get("userId"), userId));
+        }
+        return predicates;
+    }
+}
@@ -2,13 +2,69 @@ package com.example.ecommerce.repository;
 
 import com.example.ecommerce.model.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.List;
+
 /**
  * Repository for OrderItem entity
  * Basic CRUD operations inherited from JpaRepository
  */
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
-    // No custom methods needed for now
+
+    /**
+     * Copy every line of a cart into an order, with the products' current names and prices,
+     * in one statement however many lines there are
+     * Ids come from one nextval per 50 lines: a value handed out by the pooled sequence
+     * (INCREMENT BY 50) is the top of a block of 50 nobody else uses, see V3__sequence_ids.sql
+     * The lines are returned (in id order) together with the order total, summed by the
+     * database, so the caller does not have to load them back
+     * Returns nothing, and takes no ids, for an empty cart
+     */
+    @Query(value = """
+            WITH lines AS (
+                SELECT p.id AS product_id, p.name, p.price, ci.quantity,
+                       row_number() OVER (ORDER BY ci.id) - 1 AS n
+                FROM cart_items ci JOIN products p ON p.id = ci.product_id
+                WHERE ci.cart_id = :cartId
+            ), blocks AS (
+                SELECT b, nextval('order_items_seq') AS last_id
+                FROM generate_series(0, (SELECT (COUNT(*) + 49) / 50 - 1 FROM lines)) b
+            ), inserted AS (
+                INSERT INTO order_items (id, order_id, product_id, product_name, price, quantity)
+                SELECT blocks.last_id - 49 + lines.n % 50, :orderId,
+                       lines.product_id, lines.name, lines.price, lines.quantity
+                FROM lines JOIN blocks ON blocks.b = lines.n / 50
+                RETURNING id, product_id, product_name, price, quantity
+            )
+            SELECT id, product_id AS "productId", product_name AS "productName", price, quantity,
+                   SUM(price * quantity) OVER () AS "orderTotal"
+            FROM inserted
+            ORDER BY id
+            """, nativeQuery = true)
+    List<CopiedLine> copyFromCart(@Param("orderId") Long orderId, @Param("cartId") Long cartId);
+
+    /**
+     * A line written by copyFromCart
+     */
+    interface CopiedLine {
+        Long getId();
+
+        Long getProductId();
+
+        String getProductName();
+
+        BigDecimal getPrice();
+
+        Integer getQuantity();
+
+        /**
+         * Sum of price * quantity over all lines of the order
+         */
+        BigDecimal getOrderTotal();
+    }
 }
@@ -1,20 +1,58 @@
 package com.example.ecommerce.repository;
 
 import com.example.ecommerce.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository for Order entity
  */
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
     
     /**
      * Find all orders for a specific user
      * Ordered by creation date (newest first)
+     * Items are fetched in the same query
      */
+    @EntityGraph(attributePaths = "items")
     List<Order> findByUserIdOrderByCreatedAtDesc(Long userId);
+
+    /**
+     * Find an order together with its items
+     */
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(Long id);
+
+    /**
+     * Remember the Stripe Checkout session created for an order
+     * Column update only, so the (detached) order and its items are not merged back
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Order o SET o.stripeSessionId = :sessionId, o.stripeSessionUrl = :url, "
+            + "o.stripeSessionExpiresAt = :expiresAt, o.stripeSessionFingerprint = :fingerprint "
+            + "WHERE o.id = :id")
+    int saveCheckoutSession(@Param("id") Long id, @Param("sessionId") String sessionId,
+                            @Param("url") String url, @Param("expiresAt") LocalDateTime expiresAt,
+                            @Param("fingerprint") String fingerprint);
+
+    /**
+     * Number the order's next outbox event (1, 2, ...)
+     * The update locks the order row until the caller commits, so concurrent writers of the same
+     * order's events get their numbers in commit order
+     */
+    @Query(value = "UPDATE orders SET event_seq = event_seq + 1 WHERE id = :id RETURNING event_seq",
+            nativeQuery = true)
+    long nextEventSeq(@Param("id") Long id);
 }
@@ -0,0 +1,60 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for the order event outbox
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Lock up to :limit due pending events, oldest first, for delivery in the caller's transaction
+     * Rows locked by another dispatcher are skipped rather than waited for, so instances share the work
+     * An event is only due once every earlier event of the same order is delivered (or parked as failed),
+     * which keeps each order's events in order across retries and instances; "earlier" is by aggregate_seq,
+     * since ids from the pooled sequence are not in commit order across instances
+     */
+    @Query(value = """
+            SELECT * FROM outbox_events e
+            WHERE e.status = 'pending' AND e.next_attempt_at <= :now
+              AND NOT EXISTS (
+                  SELECT 1 FROM outbox_events earlier
+                  WHERE earlier.aggregate_id = e.aggregate_id AND earlier.aggregate_seq < e.aggregate_seq AND earlier.status = 'pending'
+              )
+            ORDER BY e.id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxEvent> lockDueBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    long countByStatus(String status);
+
+    /**
+     * An order's events, in the order they are delivered
+     */
+    List<OutboxEvent> findByAggregateIdOrderByAggregateSeq(Long aggregateId);
+
+    /**
+     * Creation time of the oldest event not delivered yet (null when the outbox is empty)
+     */
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e WHERE e.status = 'pending'")
+    LocalDateTime findOldestPendingCreatedAt();
+
+    /**
+     * Delete delivered events dispatched before the cutoff
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = 'dispatched' AND e.dispatchedAt < :cutoff")
+    int deleteDispatchedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
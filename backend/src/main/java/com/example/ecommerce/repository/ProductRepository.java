@@ -1,7 +1,14 @@
 package com.example.ecommerce.repository;
 
 import com.example.ecommerce.model.Product;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,4 +17,49 @@ import java.util.List;
 public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByCategory(String category);
     List<Product> findByNameContainingIgnoreCase(String name);
+
+    /**
+     * Keyset (seek) pagination over all products
+     * The sort must end with a unique column (id) so the cursor is stable; each sort has an index
+     * on (column, id), see V7__product_sort_indexes.sql
+     */
+    Window<Product> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    /**
+     * Keyset (seek) pagination within one category, on the (category, column, id) indexes
+     */
+    Window<Product> findByCategory(String category, ScrollPosition position, Sort sort, Limit limit);
+
+    /**
+     * Atomically take stock if enough is left
+     * Returns 1 when the stock was decremented, 0 when there was not enough
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = p.stock - :quantity WHERE p.id = :id AND p.stock >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Take the stock for all lines of an order in one statement
+     * Only products with enough stock are decremented; their ids are returned, so the
+     * caller can tell which lines were short. The rows are locked in product id order
+     * first, like InventoryService.reserve, so concurrent orders cannot deadlock.
+     */
+    @Query(value = """
+            UPDATE products p SET stock = p.stock - l.quantity
+            FROM (SELECT product_id, SUM(quantity) AS quantity
+                  FROM order_items WHERE order_id = :orderId GROUP BY product_id) l,
+                 (SELECT id FROM products
+                  WHERE id IN (SELECT product_id FROM order_items WHERE order_id = :orderId)
+                  ORDER BY id FOR UPDATE) locked
+            WHERE p.id = l.product_id AND p.id = locked.id AND p.stock >= l.quantity
+            RETURNING p.id
+            """, nativeQuery = true)
+    List<Long> decrementStockForOrder(@Param("orderId") Long orderId);
+
+    /**
+     * Put stock back (e.g. when an order is cancelled)
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = p.stock + :quantity WHERE p.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
 }
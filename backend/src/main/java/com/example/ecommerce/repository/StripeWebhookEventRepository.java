@@ -0,0 +1,75 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.model.StripeWebhookEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for the Stripe webhook intake queue
+ */
+@Repository
+public interface StripeWebhookEventRepository extends JpaRepository<StripeWebhookEvent, String> {
+
+    /**
+     * Store an event unless one with the same id is already queued
+     * Returns 1 if stored, 0 for a duplicate delivery
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO stripe_webhook_events "
+            + "(id, type, payload, status, attempts, next_attempt_at, received_at) "
+            + "VALUES (:id, :type, :payload, 'pending', 0, :now, :now) "
+            + "ON CONFLICT (id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id, @Param("type") String type,
+                       @Param("payload") String payload, @Param("now") LocalDateTime now);
+
+    /**
+     * Ids of pending events that are due, oldest first
+     */
+    @Query("SELECT e.id FROM StripeWebhookEvent e "
+            + "WHERE e.status = 'pending' AND e.nextAttemptAt <= :now ORDER BY e.receivedAt")
+    List<String> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Atomically move a pending event to processing
+     * Returns 1 if this caller claimed it, 0 if someone else did
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StripeWebhookEvent e SET e.status = 'processing' WHERE e.id = :id AND e.status = 'pending'")
+    int claim(@Param("id") String id);
+
+    /**
+     * Put events left in processing (e.g. by a crash) back in the queue
+     * Safe because applying an event re-checks its status under a row lock
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StripeWebhookEvent e SET e.status = 'pending' WHERE e.status = 'processing'")
+    int releaseInFlight();
+
+    /**
+     * Load an event with a row lock, used while applying it
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<StripeWebhookEvent> findForUpdateById(String id);
+
+    long countByStatus(String status);
+
+    /**
+     * Receive time of the oldest event not yet applied (null when the queue is empty)
+     */
+    @Query("SELECT MIN(e.receivedAt) FROM StripeWebhookEvent e WHERE e.status IN ('pending', 'processing')")
+    LocalDateTime findOldestUnprocessedReceivedAt();
+}
@@ -0,0 +1,330 @@
+package com.example.ecommerce.search;
+
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over product name, category and description
+ *
+ * Replaces the LIKE '%q%' scan for product search. Every term points to the
+ * products containing it, with a weight per field (name > category > description).
+ * Query terms are matched exactly or as prefixes (for the typeahead search box),
+ * all terms must match, and results are ranked by the summed weights.
+ *
+ * The index is built from the database once the application is ready and is then
+ * kept up to date by ProductService on create/update/delete. Each instance keeps
+ * its own index, so changes made through another instance show up after a restart.
+ *
+ * A rebuild scans the table into a new index without holding the lock, so searches
+ * and writes carry on against the current one meanwhile. Writes made during the
+ * scan are also recorded, and replayed onto the new index just before it is swapped
+ * in under a short write lock; the scan may or may not have seen them, replaying
+ * makes the newest version win either way. Two indexes are held while a rebuild runs.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    /**
+     * An exact term match counts double compared to a prefix match
+     */
+    private static final int EXACT_MATCH_BONUS = 2;
+
+    /**
+     * Upper bound on the terms one prefix can expand to (e.g. a single letter)
+     * Past it the prefix only matches the first terms in order, and the result is flagged truncated
+     */
+    private static final int MAX_PREFIX_EXPANSIONS = 256;
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // One rebuild at a time, without blocking searches or writes
+    private final Lock rebuildLock = new ReentrantLock();
+
+    // Guarded by lock
+    private Terms terms = new Terms();
+    // Writes made while a rebuild scans the table, null when no rebuild runs; guarded by lock
+    private List<Change> changesDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Build the index from the products table, one batch at a time, and swap it in
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Terms rebuilt = new Terms();
+            try {
+                ScrollPosition position = ScrollPosition.keyset();
+                Window<Product> window;
+                do {
+                    window = productRepository.findAllBy(position, Sort.by("id"), Limit.of(REBUILD_BATCH_SIZE));
+                    window.forEach(rebuilt::add);
+                    if (!window.isEmpty()) {
+                        position = window.positionAt(window.size() - 1);
+                    }
+                } while (window.hasNext());
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    changesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (Change change : changesDuringRebuild) {
+                    rebuilt.remove(change.productId());
+                    if (change.product() != null) {
+                        rebuilt.add(change.product());
+                    }
+                }
+                changesDuringRebuild = null;
+                terms = rebuilt;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * True once the initial build has finished
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Add or re-index a product
+     */
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            terms.remove(product.getId());
+            terms.add(product);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(new Change(product.getId(), product));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a product from the index
+     */
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            terms.remove(productId);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(new Change(productId, null));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Search the index
+     *
+     * @param query free text; the last (or only) term may be a prefix
+     * @param offset number of ranked results to skip
+     * @param limit max number of ids to return
+     */
+    public SearchResult search(String query, int offset, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return new SearchResult(List.of(), 0, false);
+        }
+
+        Map<Long, Integer> scores = null;
+        boolean truncated = false;
+        lock.readLock().lock();
+        try {
+            for (String queryTerm : queryTerms) {
+                TermMatch match = terms.match(queryTerm);
+                Map<Long, Integer> termScores = match.scores();
+                truncated |= match.truncated();
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // every query term has to match
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        final Map<Long, Integer> ranked = scores;
+        List<Long> ids = ranked.keySet().stream()
+                .sorted(Comparator.comparing((Long id) -> ranked.get(id)).reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .skip(offset)
+                .limit(limit)
+                .toList();
+        return new SearchResult(ids, ranked.size(), truncated);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * A write to replay onto a rebuilt index; product is null for a removal
+     */
+    private record Change(Long productId, Product product) {
+    }
+
+    /**
+     * Scores of the products matching one query term; truncated if the prefix had more
+     * than MAX_PREFIX_EXPANSIONS terms
+     */
+    private record TermMatch(Map<Long, Integer> scores, boolean truncated) {
+    }
+
+    /**
+     * The index proper, not thread-safe on its own
+     */
+    private static final class Terms {
+        // term -> (product id -> field weight)
+        private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        // product id -> terms, so a product can be removed without scanning every posting list
+        private final Map<Long, Set<String>> termsByProduct = new HashMap<>();
+
+        /**
+         * Score of every product matching one query term (exact or prefix)
+         */
+        TermMatch match(String queryTerm) {
+            Map<Long, Integer> scores = new HashMap<>();
+            int expansions = 0;
+            for (Map.Entry<String, Map<Long, Integer>> entry
+                    : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+                if (expansions++ == MAX_PREFIX_EXPANSIONS) {
+                    return new TermMatch(scores, true);
+                }
+                int multiplier = entry.getKey().equals(queryTerm) ? EXACT_MATCH_BONUS : 1;
+                entry.getValue().forEach((id, weight) -> scores.merge(id, weight * multiplier, Math::max));
+            }
+            return new TermMatch(scores, false);
+        }
+
+        void add(Product product) {
+            Map<String, Integer> weights = new HashMap<>();
+            addField(weights, product.getName(), NAME_WEIGHT);
+            addField(weights, product.getCategory(), CATEGORY_WEIGHT);
+            addField(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+
+            weights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(product.getId(), weight));
+            termsByProduct.put(product.getId(), new HashSet<>(weights.keySet()));
+        }
+
+        void remove(Long productId) {
+            Set<String> terms = termsByProduct.remove(productId);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                Map<Long, Integer> products = postings.get(term);
+                if (products != null) {
+                    products.remove(productId);
+                    if (products.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        /**
+         * A term found in several fields gets the sum of those field weights
+         */
+        private static void addField(Map<String, Integer> weights, String text, int weight) {
+            for (String term : new HashSet<>(tokenize(text))) {
+                weights.merge(term, weight, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * One page of ranked product ids plus the total number of matches
+     * When truncated, a query prefix expanded to too many terms and the total is only a lower bound
+     */
+    public static class SearchResult {
+        private final List<Long> productIds;
+        private final int total;
+        private final boolean truncated;
+
+        public SearchResult(List<Long> productIds, int total, boolean truncated) {
+            this.productIds = productIds;
+            this.total = total;
+            this.truncated = truncated;
+        }
+
+        public List<Long> getProductIds() { return productIds; }
+
+        public int getTotal() { return total; }
+
+        public boolean isTruncated() { return truncated; }
+    }
+}
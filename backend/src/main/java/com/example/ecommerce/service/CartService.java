@@ -1,202 +1,181 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.cart.CartStore;
+import com.example.ecommerce.cart.OptimisticRetry;
 import com.example.ecommerce.dto.AddToCartRequest;
-import com.example.ecommerce.dto.CartItemResponse;
+import com.example.ecommerce.dto.CartBatchRequest;
+import com.example.ecommerce.dto.CartBatchResponse;
+import com.example.ecommerce.dto.CartOperationRequest;
+import com.example.ecommerce.dto.CartOperationResult;
 import com.example.ecommerce.dto.CartResponse;
-import com.example.ecommerce.model.Cart;
-import com.example.ecommerce.model.CartItem;
-import com.example.ecommerce.model.Product;
-import com.example.ecommerce.model.User;
-import com.example.ecommerce.repository.CartItemRepository;
-import com.example.ecommerce.repository.CartRepository;
-import com.example.ecommerce.repository.ProductRepository;
-import com.example.ecommerce.repository.UserRepository;
+import com.example.ecommerce.exception.PreconditionFailedException;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 /**
  * Service for cart operations
- * Handles all business logic for shopping cart
+ * Facade over the configured CartStore (app.cart.store: jpa or memory)
+ *
+ * Changes take the cart version the client expects (If-Match), or null for any.
+ * A change that loses an optimistic locking race is retried with jittered
+ * backoff (app.cart.retry.*); if it keeps losing, the conflict reaches the client (409).
  */
 @Service
+@Timed(value = "app.service", histogram = true)
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
-    private final UserRepository userRepository;
-
-    public CartService(CartRepository cartRepository, CartItemRepository cartItemRepository,
-                      ProductRepository productRepository, UserRepository userRepository) {
-        this.cartRepository = cartRepository;
-        this.cartItemRepository = cartItemRepository;
-        this.productRepository = productRepository;
-        this.userRepository = userRepository;
+    private final CartStore cartStore;
+    private final MeterRegistry meterRegistry;
+    private final OptimisticRetry retry;
+
+    public CartService(
+            CartStore cartStore,
+            MeterRegistry meterRegistry,
+            @Value("${app.cart.retry.max-attempts:5}") int maxAttempts,
+            @Value("${app.cart.retry.initial-backoff:10ms}") Duration initialBackoff,
+            @Value("${app.cart.retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.cartStore = cartStore;
+        this.meterRegistry = meterRegistry;
+        this.retry = new OptimisticRetry(maxAttempts, initialBackoff, maxBackoff);
     }
 
     /**
      * Get user's cart
      * If cart doesn't exist, create a new one
      */
-    @Transactional
     public CartResponse getCart(Long userId) {
-        Cart cart = getOrCreateCart(userId);
-        return convertToResponse(cart);
+        return cartStore.getCart(userId);
     }
 
     /**
      * Add a product to the cart
      * If product already exists, increase quantity
      */
-    @Transactional
-    public CartResponse addToCart(Long userId, AddToCartRequest request) {
-        // Get or create cart
-        Cart cart = getOrCreateCart(userId);
-        
-        // Get the product
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-        
-        // Check if product is already in cart
-        CartItem existingItem = cartItemRepository
-                .findByCartIdAndProductId(cart.getId(), product.getId())
-                .orElse(null);
-        
-        if (existingItem != null) {
-            // Product already in cart - increase quantity
-            existingItem.setQuantity(existingItem.getQuantity() + request.getQuantity());
-            cartItemRepository.save(existingItem);
-        } else {
-            // New product - create new cart item
-            CartItem newItem = CartItem.builder()
-                    .cart(cart)
-                    .product(product)
-                    .quantity(request.getQuantity())
-                    .build();
-            cart.addItem(newItem);
-            cartItemRepository.save(newItem);
-        }
-        
-        return convertToResponse(cart);
+    public CartResponse addToCart(Long userId, AddToCartRequest request, Long expectedVersion) {
+        CartResponse cart = change("add",
+                () -> cartStore.addItem(userId, request.getProductId(), request.getQuantity(), expectedVersion));
+        cartMutated("add");
+        return cart;
     }
 
     /**
      * Update cart item quantity
+     * A quantity of 0 or less removes the item
      */
-    @Transactional
-    public CartResponse updateCartItem(Long userId, Long cartItemId, Integer newQuantity) {
-        Cart cart = getOrCreateCart(userId);
-        
-        // Find the cart item
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        // Verify the item belongs to this user's cart
-        if (!cartItem.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to this cart");
-        }
-        
-        if (newQuantity <= 0) {
-            // If quantity is 0 or negative, remove the item
-            cart.removeItem(cartItem);
-            cartItemRepository.delete(cartItem);
-        } else {
-            // Update quantity
-            cartItem.setQuantity(newQuantity);
-            cartItemRepository.save(cartItem);
-        }
-        
-        return convertToResponse(cart);
+    public CartResponse updateCartItem(Long userId, Long cartItemId, Integer newQuantity, Long expectedVersion) {
+        CartResponse cart = change("update",
+                () -> cartStore.updateItem(userId, cartItemId, newQuantity, expectedVersion));
+        cartMutated("update");
+        return cart;
     }
 
     /**
      * Remove an item from cart
      */
-    @Transactional
-    public CartResponse removeFromCart(Long userId, Long cartItemId) {
-        Cart cart = getOrCreateCart(userId);
-        
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        // Verify the item belongs to this user's cart
-        if (!cartItem.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to this cart");
+    public CartResponse removeFromCart(Long userId, Long cartItemId, Long expectedVersion) {
+        CartResponse cart = change("remove", () -> cartStore.removeItem(userId, cartItemId, expectedVersion));
+        cartMutated("remove");
+        return cart;
+    }
+
+    /**
+     * Apply an ordered list of add/update/remove operations as one unit of work
+     * Malformed operations (including null entries) reject the whole batch (400) before the
+     * cart is touched; operations that don't apply to the cart (unknown product, line not in
+     * the cart) are reported and skipped
+     */
+    public CartBatchResponse applyBatch(Long userId, CartBatchRequest request, Long expectedVersion) {
+        List<CartOperationRequest> operations = request.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("At least one operation is required");
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            validate(i, operations.get(i));
         }
-        
-        cart.removeItem(cartItem);
-        cartItemRepository.delete(cartItem);
-        
-        return convertToResponse(cart);
+        CartBatchResponse response = change("batch", () -> cartStore.applyBatch(userId, operations, expectedVersion));
+        for (CartOperationResult result : response.getResults()) {
+            if (result.isApplied()) {
+                cartMutated(result.getType().name().toLowerCase());
+            }
+        }
+        return response;
     }
 
     /**
      * Clear all items from cart
+     * Joins the caller's transaction
      */
-    @Transactional
     public void clearCart(Long userId) {
-        Cart cart = getOrCreateCart(userId);
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        cartStore.clear(userId);
+        cartMutated("clear");
     }
 
     /**
-     * Helper method: Get cart or create if it doesn't exist
+     * Make sure the carts / cart_items tables hold every acknowledged change to the cart
+     * Call before reading the cart from the database (order creation), outside any transaction
      */
-    private Cart getOrCreateCart(Long userId) {
-        return cartRepository.findByUserId(userId)
-                .orElseGet(() -> {
-                    User user = userRepository.findById(userId)
-                            .orElseThrow(() -> new RuntimeException("User not found"));
-                    Cart newCart = Cart.builder()
-                            .user(user)
-                            .build();
-                    return cartRepository.save(newCart);
-                });
+    public void flushCart(Long userId) {
+        cartStore.flush(userId);
     }
 
     /**
-     * Helper method: Convert Cart entity to CartResponse DTO
+     * Helper method: run a cart change, retrying it on optimistic locking conflicts
+     * Counts retries (app.carts.retries) and the conflicts that reach the client (app.carts.conflicts)
      */
-    private CartResponse convertToResponse(Cart cart) {
-        List<CartItemResponse> itemResponses = cart.getItems().stream()
-                .map(this::convertItemToResponse)
-                .collect(Collectors.toList());
-        
-        // Calculate total
-        BigDecimal total = itemResponses.stream()
-                .map(CartItemResponse::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Calculate item count
-        Integer itemCount = cart.getItems().stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
-        
-        return CartResponse.builder()
-                .id(cart.getId())
-                .items(itemResponses)
-                .total(total)
-                .itemCount(itemCount)
-                .build();
+    private <T> T change(String operation, Supplier<T> change) {
+        try {
+            return retry.execute(change,
+                    attempt -> meterRegistry.counter("app.carts.retries", "operation", operation).increment());
+        } catch (OptimisticLockingFailureException e) {
+            conflict(operation, "retries_exhausted");
+            throw e;
+        } catch (PreconditionFailedException e) {
+            conflict(operation, "precondition_failed");
+            throw e;
+        }
+    }
+
+    private void conflict(String operation, String outcome) {
+        meterRegistry.counter("app.carts.conflicts", "operation", operation, "outcome", outcome).increment();
+    }
+
+    /**
+     * Helper method: check that an operation carries the fields its type needs
+     */
+    private void validate(int index, CartOperationRequest operation) {
+        require(operation != null, index, "operation must not be null");
+        require(operation.getType() != null, index, "type is required");
+        switch (operation.getType()) {
+            case ADD -> {
+                require(operation.getProductId() != null, index, "productId is required for ADD");
+                require(operation.getQuantity() != null && operation.getQuantity() >= 1, index,
+                        "quantity must be at least 1 for ADD");
+            }
+            case UPDATE -> {
+                require(operation.getCartItemId() != null, index, "cartItemId is required for UPDATE");
+                require(operation.getQuantity() != null, index, "quantity is required for UPDATE");
+            }
+            case REMOVE -> require(operation.getCartItemId() != null, index, "cartItemId is required for REMOVE");
+        }
+    }
+
+    private void require(boolean condition, int index, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException("Operation " + index + ": " + message);
+        }
     }
 
     /**
-     * Helper method: Convert CartItem entity to CartItemResponse DTO
+     * Helper method: count a cart change (app.carts.mutated, tagged by operation)
      */
-    private CartItemResponse convertItemToResponse(CartItem item) {
-        return CartItemResponse.builder()
-                .id(item.getId())
-                .productId(item.getProduct().getId())
-                .productName(item.getProduct().getName())
-                .price(item.getProduct().getPrice())
-                .imageUrl(item.getProduct().getImageUrl())
-                .quantity(item.getQuantity())
-                .subtotal(item.getSubtotal())
-                .build();
+    private void cartMutated(String operation) {
+        meterRegistry.counter("app.carts.mutated", "operation", operation).increment();
     }
 }
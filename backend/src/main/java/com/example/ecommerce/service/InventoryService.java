@@ -0,0 +1,105 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.cache.ProductCatalogCache;
+import com.example.ecommerce.exception.InsufficientStockException;
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Service for product stock reservation
+ *
+ * Stock is taken with one conditional UPDATE per product
+ * (SET stock = stock - n WHERE stock >= n), so there is no read-modify-write
+ * window and no row is locked before the moment it is decremented.
+ * Reservations join the caller's transaction: if any line is short,
+ * InsufficientStockException rolls back the lines already reserved.
+ * A new order takes the stock for all of its lines in a single statement
+ * (reserveOrder), so its cost does not grow with the number of lines.
+ */
+@Service
+public class InventoryService {
+
+    private final ProductRepository productRepository;
+    private final ProductCatalogCache catalogCache;
+
+    public InventoryService(ProductRepository productRepository, ProductCatalogCache catalogCache) {
+        this.productRepository = productRepository;
+        this.catalogCache = catalogCache;
+    }
+
+    /**
+     * Reserve stock for all lines of an order, all or nothing
+     *
+     * @param quantitiesByProduct product id -> quantity to take
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Map<Long, Integer> quantitiesByProduct) {
+        // Always update rows in product id order so two concurrent orders
+        // touching the same products can never deadlock each other
+        Map<Long, Integer> ordered = new TreeMap<>(quantitiesByProduct);
+        for (Map.Entry<Long, Integer> line : ordered.entrySet()) {
+            int updated = productRepository.decrementStock(line.getKey(), line.getValue());
+            if (updated == 0) {
+                throw new InsufficientStockException(buildShortageMessage(line.getKey(), line.getValue()));
+            }
+        }
+        evictAfterCommit(ordered);
+    }
+
+    /**
+     * Reserve stock for all lines of an order already stored in order_items, all or nothing
+     *
+     * @param quantitiesByProduct the order's product id -> quantity, for the error message and cache eviction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserveOrder(Long orderId, Map<Long, Integer> quantitiesByProduct) {
+        Set<Long> reserved = new HashSet<>(productRepository.decrementStockForOrder(orderId));
+        for (Map.Entry<Long, Integer> line : new TreeMap<>(quantitiesByProduct).entrySet()) {
+            if (!reserved.contains(line.getKey())) {
+                throw new InsufficientStockException(buildShortageMessage(line.getKey(), line.getValue()));
+            }
+        }
+        evictAfterCommit(quantitiesByProduct);
+    }
+
+    /**
+     * Give stock back, e.g. when an order is cancelled
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantitiesByProduct) {
+        Map<Long, Integer> ordered = new TreeMap<>(quantitiesByProduct);
+        ordered.forEach(productRepository::incrementStock);
+        evictAfterCommit(ordered);
+    }
+
+    private String buildShortageMessage(Long productId, int requested) {
+        String name = productRepository.findById(productId)
+                .map(Product::getName)
+                .orElse("product #" + productId);
+        return "Insufficient stock for " + name + " (requested " + requested + ")";
+    }
+
+    /**
+     * Cached product snapshots carry the stock level, drop them once the new stock is visible
+     */
+    private void evictAfterCommit(Map<Long, Integer> quantitiesByProduct) {
+        List<Long> productIds = List.copyOf(quantitiesByProduct.keySet());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                catalogCache.evict(productIds);
+            }
+        });
+    }
+}
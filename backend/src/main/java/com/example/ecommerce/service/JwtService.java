@@ -1,22 +1,48 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.cache.CacheStats;
+import com.example.ecommerce.cache.LruCache;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies JWTs
+ * The signing key and parser are built once and shared (both are thread-safe).
+ * Verified tokens are cached by hash until they expire, so a token is parsed
+ * and its signature checked once instead of on every request.
+ */
 @Service
 public class JwtService {
 
     private static final String SECRET_KEY = "this_is_a_very_secret_key_1234567890"; // you’ll replace later with a stronger one
 
-    private Key getSignInKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    /**
+     * Request attribute under which JwtAuthenticationFilter stores the verified claims
+     */
+    public static final String CLAIMS_ATTRIBUTE = JwtService.class.getName() + ".claims";
+
+    private final Key signInKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes(StandardCharsets.UTF_8));
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(signInKey)
+            .build();
+
+    // SHA-256 of the token -> verified claims, each entry expires with its token
+    private final LruCache<String, Claims> verifiedTokens;
+
+    public JwtService(@Value("${app.jwt.verified-token-cache.max-size:10000}") int verifiedTokenCacheSize) {
+        this.verifiedTokens = new LruCache<>(verifiedTokenCacheSize);
     }
 
     // Generate token for a username (usually email)
@@ -37,10 +63,28 @@ public class JwtService {
                 .setSubject(subject)
                 .setIssuedAt(new Date(now))
                 .setExpiration(new Date(now + 1000 * 60 * 60 * 10)) // 10 hours
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Parse and verify a token (signature and expiration) once
+     * Throws JwtException if the token is invalid or expired
+     */
+    public Claims parseToken(String token) {
+        String tokenHash = hash(token);
+        Claims cached = verifiedTokens.get(tokenHash);
+        if (cached != null) {
+            return cached;
+        }
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            verifiedTokens.put(tokenHash, claims, expiration.getTime());
+        }
+        return claims;
+    }
+
     // Extract username from token
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -48,29 +92,36 @@ public class JwtService {
 
     // Extract any claim using a function
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return claimsResolver.apply(parseToken(token));
     }
 
     // Validate token
     public boolean isTokenValid(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username)) && !isTokenExpired(token);
+        return isTokenValid(parseToken(token), username);
+    }
+
+    // Validate already parsed claims
+    public boolean isTokenValid(Claims claims, String username) {
+        return username.equals(claims.getSubject()) && !isTokenExpired(claims);
+    }
+
+    public CacheStats verifiedTokenCacheStats() {
+        return verifiedTokens.stats();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    /**
+     * Cache key: hash of the token, so raw tokens are never kept in memory
+     */
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
@@ -0,0 +1,153 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Order;
+import com.example.ecommerce.model.OrderItem;
+import com.example.ecommerce.repository.OrderFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Service for exporting orders (admin only)
+ *
+ * Walks the orders table with a server-side database cursor and writes one
+ * row per order line as it goes. Rows are read as plain tuples, not entities,
+ * so nothing accumulates in the persistence context and memory stays flat
+ * no matter how many orders are exported.
+ */
+@Service
+public class OrderExportService {
+
+    /**
+     * Rows the JDBC driver fetches per round trip while streaming
+     */
+    private static final int FETCH_SIZE = 500;
+
+    private static final List<String> COLUMNS = List.of(
+            "orderId", "userId", "status", "createdAt", "total", "shippingAddress",
+            "productId", "productName", "price", "quantity");
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    public OrderExportService(EntityManager entityManager, PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper) {
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write all matching order lines as CSV (with a header row)
+     */
+    public void exportCsv(OrderFilter filter, OutputStream out) {
+        export(filter, out, (writer, row) -> {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append(csvValue(row.get(COLUMNS.get(i))));
+            }
+            writer.write(line.append('\n').toString());
+        }, String.join(",", COLUMNS) + "\n");
+    }
+
+    /**
+     * Write all matching order lines as newline-delimited JSON
+     */
+    public void exportNdjson(OrderFilter filter, OutputStream out) {
+        export(filter, out, (writer, row) -> {
+            writer.write(objectMapper.writeValueAsString(row));
+            writer.write('\n');
+        }, null);
+    }
+
+    private void export(OrderFilter filter, OutputStream out, RowWriter rowWriter, String header) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // PostgreSQL only streams with a fetch size inside a transaction
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Tuple> rows = entityManager.createQuery(buildQuery(filter))
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .getResultStream()) {
+                if (header != null) {
+                    writer.write(header);
+                }
+                rows.forEach(tuple -> {
+                    try {
+                        rowWriter.write(writer, toRow(tuple));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private CriteriaQuery<Tuple> buildQuery(OrderFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Order> order = query.from(Order.class);
+        Join<Order, OrderItem> item = order.join("items", JoinType.LEFT);
+
+        query.multiselect(
+                order.get("id"), order.get("userId"), order.get("status"), order.get("createdAt"),
+                order.get("total"), order.get("shippingAddress"),
+                item.get("productId"), item.get("productName"), item.get("price"), item.get("quantity"));
+        query.where(filter.toPredicates(cb, order).toArray(new Predicate[0]));
+        query.orderBy(cb.asc(order.get("id")), cb.asc(item.get("id")));
+        return query;
+    }
+
+    private Map<String, Object> toRow(Tuple tuple) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            row.put(COLUMNS.get(i), tuple.get(i));
+        }
+        return row;
+    }
+
+    private String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Writer writer, Map<String, Object> row) throws IOException;
+    }
+}
@@ -2,18 +2,34 @@ package com.example.ecommerce.service;
 
 import com.example.ecommerce.dto.CreateOrderRequest;
 import com.example.ecommerce.dto.OrderItemResponse;
+import com.example.ecommerce.dto.OrderPageResponse;
 import com.example.ecommerce.dto.OrderResponse;
-import com.example.ecommerce.model.Cart;
-import com.example.ecommerce.model.CartItem;
 import com.example.ecommerce.model.Order;
 import com.example.ecommerce.model.OrderItem;
+import com.example.ecommerce.outbox.OrderEvent;
+import com.example.ecommerce.outbox.OrderEventPublisher;
 import com.example.ecommerce.repository.CartRepository;
+import com.example.ecommerce.repository.OrderFilter;
+import com.example.ecommerce.repository.OrderItemRepository;
 import com.example.ecommerce.repository.OrderRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -21,64 +37,97 @@ import java.util.stream.Collectors;
  * Handles creating orders from cart and retrieving order history
  */
 @Service
+@Timed(value = "app.service", histogram = true)
 public class OrderService {
 
+    private static final String PAID = "paid";
+    private static final String SHIPPED = "shipped";
+    private static final String CANCELLED = "cancelled";
+
+    static final int DEFAULT_ADMIN_PAGE_SIZE = 20;
+    static final int MAX_ADMIN_PAGE_SIZE = 100;
+
+    private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
     private final CartRepository cartRepository;
     private final CartService cartService;
+    private final InventoryService inventoryService;
+    private final OrderEventPublisher orderEventPublisher;
+    private final TransactionTemplate orderTransaction;
+    private final Counter ordersCreated;
 
-    public OrderService(OrderRepository orderRepository, CartRepository cartRepository, CartService cartService) {
+    public OrderService(OrderRepository orderRepository, OrderItemRepository orderItemRepository,
+                        CartRepository cartRepository, CartService cartService,
+                        InventoryService inventoryService, OrderEventPublisher orderEventPublisher,
+                        PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
         this.cartRepository = cartRepository;
         this.cartService = cartService;
+        this.inventoryService = inventoryService;
+        this.orderEventPublisher = orderEventPublisher;
+        this.orderTransaction = new TransactionTemplate(transactionManager);
+        this.ordersCreated = meterRegistry.counter("app.orders.created");
     }
 
     /**
      * Create an order from the user's cart
-     * Converts cart items to order items and clears the cart
+     * Copies the cart lines into the order, reserves stock and clears the cart
+     * OrderCreated goes to the outbox in the same transaction
+     * Throws InsufficientStockException (and creates nothing) if any line is short
+     *
+     * Set-based: the lines are copied, reserved and deleted with one statement each,
+     * so the number of statements (and round trips) does not depend on the cart size
      */
-    @Transactional
     public OrderResponse createOrder(Long userId, CreateOrderRequest request) {
-        // Get user's cart
-        Cart cart = cartRepository.findByUserId(userId)
+        // The cart store may hold changes not written yet (write-behind), the order is built from the tables.
+        // Flushed before the order's transaction opens, so a checkout never holds two pooled connections
+        cartService.flushCart(userId);
+        return orderTransaction.execute(status -> placeOrder(userId, request));
+    }
+
+    /**
+     * Helper method: the order's transaction, run by createOrder after the cart is flushed
+     */
+    private OrderResponse placeOrder(Long userId, CreateOrderRequest request) {
+        // Cart changes wait for (or fail their version check against) this order until it commits
+        Long cartId = cartRepository.lockIdByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
-        
-        // Check if cart is empty
-        if (cart.getItems().isEmpty()) {
-            throw new RuntimeException("Cannot create order from empty cart");
-        }
-        
-        // Create new order
-        Order order = Order.builder()
+
+        // Order header first (its id comes from the sequence), the total is known once the lines are in
+        Order order = orderRepository.saveAndFlush(Order.builder()
                 .userId(userId)
                 .status("pending")
+                .total(BigDecimal.ZERO)
                 .shippingAddress(request.getShippingAddress())
-                .build();
-        
-        // Convert cart items to order items
-        BigDecimal total = BigDecimal.ZERO;
-        for (CartItem cartItem : cart.getItems()) {
-            OrderItem orderItem = OrderItem.builder()
-                    .order(order)
-                    .productId(cartItem.getProduct().getId())
-                    .productName(cartItem.getProduct().getName())
-                    .price(cartItem.getProduct().getPrice())
-                    .quantity(cartItem.getQuantity())
-                    .build();
-            
-            order.addItem(orderItem);
-            total = total.add(orderItem.getSubtotal());
+                .build());
+
+        // Copy the lines with the products' current names and prices; the statement returns them
+        // with their total, so the order is not loaded back
+        List<OrderItemRepository.CopiedLine> copied = orderItemRepository.copyFromCart(order.getId(), cartId);
+        if (copied.isEmpty()) {
+            throw new RuntimeException("Cannot create order from empty cart");
         }
-        
-        order.setTotal(total);
-        
-        // Save order
-        Order savedOrder = orderRepository.save(order);
-        
+        List<OrderItem> items = copied.stream()
+                .map(line -> new OrderItem(line.getId(), order, line.getProductId(), line.getProductName(),
+                        line.getPrice(), line.getQuantity()))
+                .collect(Collectors.toList());
+        order.setTotal(copied.get(0).getOrderTotal());
+
         // Clear the cart
         cartService.clearCart(userId);
-        
-        return convertToResponse(savedOrder);
+
+        // Reserve stock last, so hot product rows stay locked for as short a time as possible
+        inventoryService.reserveOrder(order.getId(), quantitiesByProduct(items));
+
+        orderEventPublisher.publish(OrderEvent.ORDER_CREATED, order);
+        ordersCreated.increment();
+        MDC.put("orderId", order.getId().toString());
+        log.info("Order created with {} items, total {}", items.size(), order.getTotal());
+
+        return convertToResponse(order, items);
     }
 
     /**
@@ -95,7 +144,7 @@ public class OrderService {
      * Get a specific order by ID
      */
     public OrderResponse getOrderById(Long userId, Long orderId) {
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         
         // Verify the order belongs to this user
@@ -109,38 +158,93 @@ public class OrderService {
     // ============ ADMIN METHODS ============
 
     /**
-     * Get all orders (admin only)
-     * Returns all orders from all users
+     * Get one page of orders from all users (admin only)
+     * Newest first; items of the page are loaded in one batch
      */
-    public List<OrderResponse> getAllOrders() {
-        List<Order> orders = orderRepository.findAll();
-        return orders.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public OrderPageResponse getOrders(OrderFilter filter, Integer page, Integer size) {
+        int pageNumber = page == null ? 0 : page;
+        int pageSize = size == null ? DEFAULT_ADMIN_PAGE_SIZE : Math.min(size, MAX_ADMIN_PAGE_SIZE);
+        if (pageNumber < 0 || pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page or size");
+        }
+
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize,
+                Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")));
+        Page<Order> orders = orderRepository.findAll(filter.toSpecification(), pageRequest);
+
+        return OrderPageResponse.builder()
+                .content(orders.getContent().stream()
+                        .map(this::convertToResponse)
+                        .collect(Collectors.toList()))
+                .page(pageNumber)
+                .size(pageSize)
+                .totalElements(orders.getTotalElements())
+                .totalPages(orders.getTotalPages())
+                .build();
     }
 
     /**
      * Update order status (admin only)
      * Common statuses: "pending", "paid", "shipped", "delivered", "cancelled"
+     * Cancelling an order puts its stock back, un-cancelling reserves it again
+     * Moving to "paid" or "shipped" writes OrderPaid / OrderShipped to the outbox
      */
     @Transactional
     public OrderResponse updateOrderStatus(Long orderId, String newStatus) {
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
+
+        MDC.put("orderId", orderId.toString());
+        log.info("Order status {} -> {}", order.getStatus(), newStatus);
+
+        boolean wasCancelled = CANCELLED.equals(order.getStatus());
+        boolean isCancelled = CANCELLED.equals(newStatus);
+        if (isCancelled && !wasCancelled) {
+            inventoryService.release(quantitiesByProduct(order.getItems()));
+        } else if (wasCancelled && !isCancelled) {
+            inventoryService.reserve(quantitiesByProduct(order.getItems()));
+        }
         
+        String oldStatus = order.getStatus();
         order.setStatus(newStatus);
         orderRepository.save(order);
-        
+
+        if (PAID.equals(newStatus) && !PAID.equals(oldStatus)) {
+            orderEventPublisher.publish(OrderEvent.ORDER_PAID, order);
+        } else if (SHIPPED.equals(newStatus) && !SHIPPED.equals(oldStatus)) {
+            orderEventPublisher.publish(OrderEvent.ORDER_SHIPPED, order);
+        }
+
         return convertToResponse(order);
     }
 
     // ============ HELPER METHODS ============
 
+    /**
+     * Helper method: Total quantity per product over all lines of an order
+     */
+    private Map<Long, Integer> quantitiesByProduct(List<OrderItem> items) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
     /**
      * Helper method: Convert Order entity to OrderResponse DTO
+     * Package-private so the JMH benchmarks can call it directly
+     */
+    OrderResponse convertToResponse(Order order) {
+        return convertToResponse(order, order.getItems());
+    }
+
+    /**
+     * Helper method: Convert an order whose items are held apart from the entity (a new order's copied lines)
      */
-    private OrderResponse convertToResponse(Order order) {
-        List<OrderItemResponse> itemResponses = order.getItems().stream()
+    private OrderResponse convertToResponse(Order order, List<OrderItem> items) {
+        List<OrderItemResponse> itemResponses = items.stream()
                 .map(this::convertItemToResponse)
                 .collect(Collectors.toList());
         
@@ -0,0 +1,69 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.model.Product;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opaque cursor for the keyset-paginated product listing
+ * Encodes the sort key and id of the last product on a page so the next
+ * page can seek straight past it (WHERE (sortKey, id) > (?, ?))
+ */
+final class ProductPageCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private ProductPageCursor() {}
+
+    /**
+     * Build the cursor pointing after the given product
+     */
+    static String encode(String sortField, Sort.Direction direction, Product last) {
+        String value = switch (sortField) {
+            case "price" -> last.getPrice().toPlainString();
+            case "name" -> last.getName();
+            default -> "";
+        };
+        // value goes last because names may contain the separator
+        String raw = sortField + SEPARATOR + direction.name() + SEPARATOR + last.getId() + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor into keyset keys for ScrollPosition.forward
+     * The cursor must have been produced for the same sort field and direction
+     */
+    static Map<String, Object> decode(String cursor, String sortField, Sort.Direction direction) {
+        String[] parts;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            parts = raw.split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!parts[0].equals(sortField) || !parts[1].equals(direction.name())) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        try {
+            switch (sortField) {
+                case "price" -> keys.put("price", new BigDecimal(parts[3]));
+                case "name" -> keys.put("name", parts[3]);
+                default -> { }
+            }
+            keys.put("id", Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return keys;
+    }
+}
@@ -1,60 +1,236 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.cache.ProductCatalogCache;
+import com.example.ecommerce.dto.ProductPageResponse;
 import com.example.ecommerce.dto.ProductRequest;
 import com.example.ecommerce.dto.ProductResponse;
+import com.example.ecommerce.dto.ProductSearchResponse;
 import com.example.ecommerce.model.Product;
 import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.search.ProductSearchIndex;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Service to handle product-related business logic.
+ * Reads are served from ProductCatalogCache where possible.
  */
 @Service
+@Timed(value = "app.service", histogram = true)
 public class ProductService {
 
+    /**
+     * Max ids per findAllById call when refilling the cache
+     * Keeps the IN list well below the PostgreSQL bind parameter limit
+     */
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    /**
+     * Page sizes for the keyset-paginated listing
+     */
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
+    private static final List<String> PAGE_SORT_FIELDS = List.of("id", "price", "name");
+
     private final ProductRepository productRepository;
+    private final ProductCatalogCache catalogCache;
+    private final ProductSearchIndex searchIndex;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, ProductCatalogCache catalogCache,
+                          ProductSearchIndex searchIndex) {
         this.productRepository = productRepository;
+        this.catalogCache = catalogCache;
+        this.searchIndex = searchIndex;
     }
 
     /**
      * Get all products
      */
     public List<ProductResponse> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        List<Long> ids = catalogCache.getListing(null);
+        if (ids != null) {
+            return getProductsByIds(ids);
+        }
+        ProductCatalogCache.ReadStamp stamp = catalogCache.beginRead();
+        return loadListing(null, productRepository.findAll(), stamp);
     }
 
     /**
      * Get product by ID
      */
     public ProductResponse getProductById(Long id) {
+        ProductResponse cached = catalogCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        ProductCatalogCache.ReadStamp stamp = catalogCache.beginRead();
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
-        return mapToResponse(product);
+        ProductResponse response = mapToResponse(product);
+        catalogCache.put(response, stamp);
+        return response;
     }
 
     /**
      * Get products by category
      */
     public List<ProductResponse> getProductsByCategory(String category) {
-        return productRepository.findByCategory(category).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        List<Long> ids = catalogCache.getListing(category);
+        if (ids != null) {
+            return getProductsByIds(ids);
+        }
+        ProductCatalogCache.ReadStamp stamp = catalogCache.beginRead();
+        return loadListing(category, productRepository.findByCategory(category), stamp);
+    }
+
+    /**
+     * Get one page of products using keyset pagination
+     * Every sort has an index (V2, V7), so a page is read from the index in order, never sorted.
+     * Sorted by id the cursor is an index seek and deep pages cost the same as the first one; by
+     * price or name the cursor is an OR over two columns, which PostgreSQL applies as a filter
+     * while walking the index, so a deep page also steps over the index entries before it
+     *
+     * @param category optional category filter
+     * @param sort sort field: id, price or name (ties are broken by id)
+     * @param direction asc or desc
+     * @param size page size, capped at MAX_PAGE_SIZE
+     * @param cursor nextCursor of the previous page, or null for the first page
+     */
+    public ProductPageResponse getProductPage(String category, String sort, String direction,
+                                              Integer size, String cursor) {
+        String sortField = sort == null || sort.isEmpty() ? "id" : sort.toLowerCase();
+        if (!PAGE_SORT_FIELDS.contains(sortField)) {
+            throw new IllegalArgumentException("Unsupported sort field: " + sort + " (use id, price or name)");
+        }
+        Sort.Direction sortDirection = direction == null || direction.isEmpty()
+                ? Sort.Direction.ASC
+                : Sort.Direction.fromString(direction);
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        // id is unique, so appending it makes the order total and the cursor stable
+        Sort order = "id".equals(sortField)
+                ? Sort.by(sortDirection, "id")
+                : Sort.by(sortDirection, sortField).and(Sort.by(sortDirection, "id"));
+        ScrollPosition position = cursor == null || cursor.isEmpty()
+                ? ScrollPosition.keyset()
+                : ScrollPosition.forward(ProductPageCursor.decode(cursor, sortField, sortDirection));
+
+        Window<Product> window = category != null && !category.isEmpty()
+                ? productRepository.findByCategory(category, position, order, Limit.of(pageSize))
+                : productRepository.findAllBy(position, order, Limit.of(pageSize));
+
+        List<Product> products = window.getContent();
+        String nextCursor = null;
+        if (window.hasNext() && !products.isEmpty()) {
+            nextCursor = ProductPageCursor.encode(sortField, sortDirection, products.get(products.size() - 1));
+        }
+
+        return ProductPageResponse.builder()
+                .items(products.stream().map(this::mapToResponse).collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .size(pageSize)
+                .build();
+    }
+
+    /**
+     * Get products for a list of ids, keeping the order of the ids
+     * Cached snapshots are used where possible, the rest is loaded in batches
+     * Ids of products that no longer exist are skipped
+     */
+    public List<ProductResponse> getProductsByIds(List<Long> ids) {
+        Map<Long, ProductResponse> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            ProductResponse cached = catalogCache.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        for (int from = 0; from < missing.size(); from += LOAD_BATCH_SIZE) {
+            List<Long> batch = missing.subList(from, Math.min(from + LOAD_BATCH_SIZE, missing.size()));
+            ProductCatalogCache.ReadStamp stamp = catalogCache.beginRead();
+            for (Product product : productRepository.findAllById(batch)) {
+                ProductResponse response = mapToResponse(product);
+                catalogCache.put(response, stamp);
+                found.put(response.getId(), response);
+            }
+        }
+
+        List<ProductResponse> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductResponse product = found.get(id);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
     }
 
     /**
-     * Search products by name
+     * Search products by name, category and description
+     * Returns the best MAX_PAGE_SIZE matches, ranked
      */
     public List<ProductResponse> searchProducts(String query) {
-        return productRepository.findByNameContainingIgnoreCase(query).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return searchProducts(query, 0, MAX_PAGE_SIZE).getItems();
+    }
+
+    /**
+     * Ranked, paged product search backed by ProductSearchIndex
+     * Partial words match as prefixes, so this also serves typeahead
+     */
+    public ProductSearchResponse searchProducts(String query, Integer page, Integer size) {
+        int pageNumber = page == null ? 0 : page;
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        if (pageNumber < 0 || pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page or size");
+        }
+        int offset = pageNumber * pageSize;
+
+        List<ProductResponse> items;
+        int total;
+        boolean truncated = false;
+        if (searchIndex.isReady()) {
+            ProductSearchIndex.SearchResult result = searchIndex.search(query, offset, pageSize);
+            items = getProductsByIds(result.getProductIds());
+            total = result.getTotal();
+            truncated = result.isTruncated();
+        } else {
+            // index still building right after startup - fall back to the database
+            List<Product> matches = productRepository.findByNameContainingIgnoreCase(query);
+            items = matches.stream()
+                    .skip(offset)
+                    .limit(pageSize)
+                    .map(this::mapToResponse)
+                    .collect(Collectors.toList());
+            total = matches.size();
+        }
+
+        return ProductSearchResponse.builder()
+                .items(items)
+                .total(total)
+                .truncated(truncated)
+                .page(pageNumber)
+                .size(pageSize)
+                .build();
     }
 
     /**
@@ -71,7 +247,10 @@ public class ProductService {
                 .build();
 
         Product savedProduct = productRepository.save(product);
-        return mapToResponse(savedProduct);
+        ProductResponse response = mapToResponse(savedProduct);
+        catalogCache.productSaved(response, null, true);
+        searchIndex.index(savedProduct);
+        return response;
     }
 
     /**
@@ -80,6 +259,7 @@ public class ProductService {
     public ProductResponse updateProduct(Long id, ProductRequest request) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+        String previousCategory = product.getCategory();
 
         product.setName(request.getName());
         product.setPrice(request.getPrice());
@@ -89,23 +269,47 @@ public class ProductService {
         product.setDescription(request.getDescription());
 
         Product updatedProduct = productRepository.save(product);
-        return mapToResponse(updatedProduct);
+        ProductResponse response = mapToResponse(updatedProduct);
+        catalogCache.productSaved(response, previousCategory, false);
+        searchIndex.index(updatedProduct);
+        return response;
     }
 
     /**
      * Delete a product (admin only)
      */
     public void deleteProduct(Long id) {
-        if (!productRepository.existsById(id)) {
-            throw new RuntimeException("Product not found with id: " + id);
+        Product product = productRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+        productRepository.delete(product);
+        catalogCache.productDeleted(id, product.getCategory());
+        searchIndex.remove(id);
+    }
+
+    /**
+     * Map a freshly loaded listing, fill the cache and return it
+     * A listing too long for the product cache is returned without caching anything,
+     * its snapshots would only evict each other (and every hot product) on the way in
+     *
+     * @param stamp taken before the listing was read
+     */
+    private List<ProductResponse> loadListing(String category, List<Product> products,
+                                              ProductCatalogCache.ReadStamp stamp) {
+        List<ProductResponse> responses = products.stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+        if (catalogCache.canHoldListing(responses.size())) {
+            responses.forEach(response -> catalogCache.put(response, stamp));
+            catalogCache.putListing(category, responses.stream().map(ProductResponse::getId).toList(), stamp);
         }
-        productRepository.deleteById(id);
+        return responses;
     }
 
     /**
      * Map Product entity to ProductResponse DTO
+     * Package-private so the JMH benchmarks can call it directly
      */
-    private ProductResponse mapToResponse(Product product) {
+    ProductResponse mapToResponse(Product product) {
         return ProductResponse.builder()
                 .id(product.getId())
                 .name(product.getName())
@@ -3,20 +3,46 @@ package com.example.ecommerce.service;
 import com.example.ecommerce.dto.CheckoutSessionResponse;
 import com.example.ecommerce.model.Order;
 import com.example.ecommerce.model.OrderItem;
+import com.example.ecommerce.model.StripeWebhookEvent;
+import com.example.ecommerce.outbox.OrderEvent;
+import com.example.ecommerce.outbox.OrderEventPublisher;
 import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.repository.StripeWebhookEventRepository;
+import com.example.ecommerce.stripe.StripeGateway;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.stripe.Stripe;
+import com.stripe.exception.EventDataObjectDeserializationException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Event;
+import com.stripe.model.EventDataObjectDeserializer;
 import com.stripe.model.StripeObject;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
 import com.stripe.param.checkout.SessionCreateParams;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service for Stripe payment integration
@@ -26,8 +52,20 @@ import java.util.List;
 public class StripeService {
 
     private final OrderRepository orderRepository;
-    @SuppressWarnings("unused")
-	private final OrderService orderService;
+    private final StripeWebhookEventRepository webhookEventRepository;
+    private final StripeGateway stripeGateway;
+    private final OrderEventPublisher orderEventPublisher;
+
+    /**
+     * A stored session is only reused if the customer still has this long to pay
+     */
+    private static final Duration SESSION_REUSE_MARGIN = Duration.ofMinutes(10);
+
+    private static final Logger log = LoggerFactory.getLogger(StripeService.class);
+    private static final String MDC_ORDER_ID = "orderId";
+    static final String MDC_EVENT_ID = "eventId";
+
+    private final AtomicLong duplicateDeliveries = new AtomicLong();
 
     /**
      * Stripe API key from application.properties
@@ -35,6 +73,12 @@ public class StripeService {
     @Value("${stripe.api.key}")
     private String stripeApiKey;
 
+    /**
+     * Optional Stripe API base URL, e.g. a local stub; empty means the real API
+     */
+    @Value("${stripe.api.base:}")
+    private String stripeApiBase;
+
     /**
      * Webhook secret for validating Stripe webhook events
      */
@@ -54,27 +98,36 @@ public class StripeService {
     private String cancelUrl;
 
     // Constructor for dependency injection
-    public StripeService(OrderRepository orderRepository, OrderService orderService) {
+    public StripeService(OrderRepository orderRepository, StripeWebhookEventRepository webhookEventRepository,
+                         StripeGateway stripeGateway, OrderEventPublisher orderEventPublisher) {
         this.orderRepository = orderRepository;
-        this.orderService = orderService;
+        this.webhookEventRepository = webhookEventRepository;
+        this.stripeGateway = stripeGateway;
+        this.orderEventPublisher = orderEventPublisher;
     }
 
     /**
-     * Initialize Stripe API key after bean construction
+     * Initialize Stripe API key (and API base override) after bean construction
      * This runs once when the application starts
      */
     @PostConstruct
     public void init() {
         Stripe.apiKey = stripeApiKey;
+        if (stripeApiBase != null && !stripeApiBase.isBlank()) {
+            Stripe.overrideApiBase(stripeApiBase);
+        }
     }
 
     /**
      * Create a Stripe Checkout session for an order
      * Returns a URL that frontend can redirect the user to
+     * A session created earlier for the same order contents is returned as long as it
+     * is valid for at least SESSION_REUSE_MARGIN; otherwise a new one is created
      */
+    @Timed(value = "app.service", histogram = true)
     public CheckoutSessionResponse createCheckoutSession(Long orderId, Long userId) {
-        // Get the order
-        Order order = orderRepository.findById(orderId)
+        // Get the order (with its items, needed for the line items below)
+        Order order = orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
         // Verify the order belongs to this user
@@ -87,13 +140,23 @@ public class StripeService {
             throw new RuntimeException("Order is already paid");
         }
 
+        MDC.put(MDC_ORDER_ID, orderId.toString());
+        String fingerprint = fingerprint(order);
+        if (isReusable(order, fingerprint)) {
+            log.debug("Reusing checkout session {}", order.getStripeSessionId());
+            return CheckoutSessionResponse.builder()
+                    .sessionId(order.getStripeSessionId())
+                    .checkoutUrl(order.getStripeSessionUrl())
+                    .build();
+        }
+
         try {
             // Create line items for Stripe from order items
             List<SessionCreateParams.LineItem> lineItems = new ArrayList<>();
             
             for (OrderItem item : order.getItems()) {
                 // Convert price to cents (Stripe uses smallest currency unit)
-                long priceInCents = item.getPrice().multiply(new java.math.BigDecimal(100)).longValue();
+                long priceInCents = toCents(item.getPrice());
                 
                 SessionCreateParams.LineItem lineItem = SessionCreateParams.LineItem.builder()
                         .setPriceData(
@@ -123,7 +186,15 @@ public class StripeService {
                     .putMetadata("orderId", orderId.toString())
                     .build();
 
-            Session session = Session.create(params);
+            // Same order, contents and previous session -> same key, so double clicks and
+            // retries get the session Stripe already created instead of a new one
+            String idempotencyKey = idempotencyKey(order, fingerprint);
+            Session session = stripeGateway.call("checkout.session.create",
+                    options -> Session.create(params, options.setIdempotencyKey(idempotencyKey).build()));
+
+            orderRepository.saveCheckoutSession(orderId, session.getId(), session.getUrl(),
+                    toLocalDateTime(session.getExpiresAt()), fingerprint);
+            log.info("Created checkout session {}", session.getId());
 
             return CheckoutSessionResponse.builder()
                     .sessionId(session.getId())
@@ -136,84 +207,217 @@ public class StripeService {
     }
 
     /**
-     * Handle Stripe webhook events
-     * Called when payment is completed, failed, etc.
+     * Helper method: true if the order's stored session can be handed out again
+     */
+    private boolean isReusable(Order order, String fingerprint) {
+        return order.getStripeSessionId() != null
+                && order.getStripeSessionUrl() != null
+                && fingerprint.equals(order.getStripeSessionFingerprint())
+                && order.getStripeSessionExpiresAt() != null
+                && order.getStripeSessionExpiresAt().isAfter(LocalDateTime.now().plus(SESSION_REUSE_MARGIN));
+    }
+
+    /**
+     * Helper method: idempotency key for Session.create
+     * Includes the previous session id, so replacing an expired session gets a fresh key
+     */
+    private String idempotencyKey(Order order, String fingerprint) {
+        String previous = order.getStripeSessionId() == null ? "none" : order.getStripeSessionId();
+        return "checkout-" + order.getId() + "-" + fingerprint + "-" + previous;
+    }
+
+    /**
+     * Helper method: SHA-256 over everything that goes into the session (lines, total, currency)
+     */
+    static String fingerprint(Order order) {
+        StringBuilder contents = new StringBuilder("usd|").append(toCents(order.getTotal()));
+        order.getItems().stream()
+                .sorted(Comparator.comparing(OrderItem::getId, Comparator.nullsLast(Comparator.naturalOrder())))
+                .forEach(item -> contents.append('|')
+                        .append(item.getProductId()).append(':')
+                        .append(item.getProductName()).append(':')
+                        .append(toCents(item.getPrice())).append(':')
+                        .append(item.getQuantity()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(contents.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private LocalDateTime toLocalDateTime(Long epochSeconds) {
+        return epochSeconds == null ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSeconds), ZoneId.systemDefault());
+    }
+
+    /**
+     * Accept a Stripe webhook delivery
+     * Verifies the signature and queues the raw event, keyed by its event id;
+     * the event itself is applied later by StripeWebhookProcessor.
+     * Returns false when the event id was already queued (Stripe redelivery)
      */
-    public void handleWebhook(String payload, String sigHeader) {
+    @Timed(value = "app.service", histogram = true)
+    public boolean handleWebhook(String payload, String sigHeader) {
         Event event;
 
         try {
             // Verify the webhook signature to ensure it's from Stripe
             event = com.stripe.net.Webhook.constructEvent(payload, sigHeader, webhookSecret);
         } catch (Exception e) {
-            throw new RuntimeException("Webhook signature verification failed: " + e.getMessage());
+            throw new IllegalArgumentException("Webhook signature verification failed: " + e.getMessage());
+        }
+
+        MDC.put(MDC_EVENT_ID, event.getId());
+        boolean queued = webhookEventRepository.insertIfAbsent(
+                event.getId(), event.getType(), payload, LocalDateTime.now()) == 1;
+        if (!queued) {
+            duplicateDeliveries.incrementAndGet();
+            log.debug("Duplicate delivery of {} event", event.getType());
+        } else {
+            log.debug("Queued {} event", event.getType());
+        }
+        return queued;
+    }
+
+    /**
+     * Apply one queued webhook event
+     * Runs in one transaction with the event row locked, so an event id is
+     * applied at most once even if two workers pick it up; any exception rolls
+     * the order changes back and leaves the event for a retry
+     */
+    @Timed(value = "app.service", histogram = true)
+    @Transactional
+    public void applyQueuedEvent(String eventId) {
+        StripeWebhookEvent queued = webhookEventRepository.findForUpdateById(eventId)
+                .orElseThrow(() -> new RuntimeException("Webhook event not found: " + eventId));
+        if (StripeWebhookEvent.STATUS_PROCESSED.equals(queued.getStatus())) {
+            return;
         }
 
+        Event event = ApiResource.GSON.fromJson(queued.getPayload(), Event.class);
+        log.debug("Applying {} event", event.getType());
+
         // Handle the event based on type
         switch (event.getType()) {
             case "checkout.session.completed":
+            case "checkout.session.async_payment_succeeded":
                 handleCheckoutSessionCompleted(event);
                 break;
             case "payment_intent.succeeded":
-                // Payment succeeded
-                System.out.println("Payment succeeded: " + event.getId());
+                log.info("Payment intent succeeded");
                 break;
             case "payment_intent.payment_failed":
-                // Payment failed
-                System.out.println("Payment failed: " + event.getId());
+                log.info("Payment intent failed");
                 break;
             default:
-                System.out.println("Unhandled event type: " + event.getType());
+                log.debug("Ignoring unhandled event type {}", event.getType());
         }
+
+        queued.setStatus(StripeWebhookEvent.STATUS_PROCESSED);
+        queued.setProcessedAt(LocalDateTime.now());
+        queued.setLastError(null);
+    }
+
+    /**
+     * Number of deliveries ignored because their event id was already queued
+     */
+    public long getDuplicateDeliveries() {
+        return duplicateDeliveries.get();
     }
 
     /**
      * Handle successful checkout session completion
-     * Updates the order status to "paid"
+     * Updates the order status to "paid" and writes OrderPaid to the outbox
+     * Reads order id, amount and payment status from the signed event itself;
+     * Stripe is only called when the payload can't be read with this SDK version
+     * Failures propagate so the queue retries the event
      */
-    @Transactional
     private void handleCheckoutSessionCompleted(Event event) {
-        System.out.println("=== WEBHOOK: checkout.session.completed received ===");
-        
-        try {
-            // Cast the StripeObject to Session and get the ID
-            @SuppressWarnings("deprecation")
-            StripeObject stripeObject = event.getData().getObject();
-            Session sessionFromEvent = (Session) stripeObject;
-            String sessionId = sessionFromEvent.getId();
-            
-            // Fetch full session from Stripe API to ensure we have all data including metadata
-            Session session = Session.retrieve(sessionId);
-            
-            System.out.println("Session ID: " + sessionId);
-            System.out.println("Session Metadata: " + session.getMetadata());
-
-            // Get order ID from metadata
-            String orderIdStr = session.getMetadata().get("orderId");
-            if (orderIdStr == null || orderIdStr.isEmpty()) {
-                System.err.println("ERROR: No orderId in session metadata");
-                return;
+        Session session = sessionFromEvent(event);
+        if (session == null) {
+            session = retrieveSession(sessionIdFromEvent(event));
+        }
+
+        // Get order ID from metadata
+        String orderIdStr = session.getMetadata() == null ? null : session.getMetadata().get("orderId");
+        if (orderIdStr == null || orderIdStr.isEmpty()) {
+            // Not one of our sessions, nothing to retry
+            log.warn("No orderId in metadata of checkout session {}", session.getId());
+            return;
+        }
+        Long orderId = Long.parseLong(orderIdStr);
+        MDC.put(MDC_ORDER_ID, orderIdStr);
+
+        if (!"paid".equals(session.getPaymentStatus()) && !"no_payment_required".equals(session.getPaymentStatus())) {
+            // Delayed payment methods complete unpaid; checkout.session.async_payment_succeeded follows
+            log.info("Checkout session {} completed with payment status {}, waiting for async payment",
+                    session.getId(), session.getPaymentStatus());
+            return;
+        }
+
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found"));
+        if ("paid".equals(order.getStatus())) {
+            return;
+        }
+
+        long expectedCents = toCents(order.getTotal());
+        if (session.getAmountTotal() == null || session.getAmountTotal() != expectedCents) {
+            // Paid amount doesn't match the order; leave it for manual review instead of marking it paid
+            log.error("Checkout session {} paid {} cents but the order totals {} cents, not marking it paid",
+                    session.getId(), session.getAmountTotal(), expectedCents);
+            return;
+        }
+
+        order.setStatus("paid");
+        orderRepository.save(order);
+        orderEventPublisher.publish(OrderEvent.ORDER_PAID, order);
+
+        log.info("Order marked as paid");
+    }
+
+    /**
+     * Helper method: the Session carried in the event, or null if this SDK can't deserialize it
+     * (e.g. the webhook endpoint uses a different API version)
+     */
+    static Session sessionFromEvent(Event event) {
+        EventDataObjectDeserializer deserializer = event.getDataObjectDeserializer();
+        StripeObject object = deserializer.getObject().orElse(null);
+        if (object == null) {
+            try {
+                object = deserializer.deserializeUnsafe();
+            } catch (EventDataObjectDeserializationException e) {
+                return null;
             }
+        }
+        return object instanceof Session session ? session : null;
+    }
 
-            System.out.println("Order ID from metadata: " + orderIdStr);
-            Long orderId = Long.parseLong(orderIdStr);
-            
-            System.out.println("Looking for order with ID: " + orderId);
-            
-            // Update order status to paid
-            Order order = orderRepository.findById(orderId)
-                    .orElseThrow(() -> new RuntimeException("Order not found"));
-            
-            System.out.println("Order found. Current status: " + order.getStatus());
-            
-            order.setStatus("paid");
-            Order savedOrder = orderRepository.save(order);
-            
-            System.out.println("✓ Order #" + orderId + " marked as PAID. New status: " + savedOrder.getStatus());
-            
-        } catch (Exception e) {
-            System.err.println("ERROR updating order: " + e.getMessage());
-            e.printStackTrace();
+    /**
+     * Helper method: the session id from the raw event payload
+     */
+    private String sessionIdFromEvent(Event event) {
+        JsonObject raw = JsonParser.parseString(event.getDataObjectDeserializer().getRawJson()).getAsJsonObject();
+        return raw.get("id").getAsString();
+    }
+
+    /**
+     * Fallback: fetch the session from the Stripe API
+     */
+    private Session retrieveSession(String sessionId) {
+        try {
+            return stripeGateway.call("checkout.session.retrieve",
+                    options -> Session.retrieve(sessionId, options.build()));
+        } catch (StripeException e) {
+            throw new RuntimeException("Failed to retrieve checkout session: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Helper method: amount in cents, rounded the same way as the line items sent to Stripe
+     */
+    static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
 }
@@ -0,0 +1,227 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.WebhookQueueStats;
+import com.example.ecommerce.model.StripeWebhookEvent;
+import com.example.ecommerce.repository.StripeWebhookEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the Stripe webhook queue filled by StripeService.handleWebhook
+ *
+ * A scheduled poller claims due events (pending -> processing) and hands them
+ * to a fixed-size worker pool. Each event is applied by
+ * StripeService.applyQueuedEvent in its own transaction; a failed attempt puts
+ * the event back as pending with exponential backoff, and after max-attempts
+ * it is parked as failed. The semaphore caps claimed-but-unfinished events so
+ * a burst never queues more work than the pool can take.
+ *
+ * The pool is private to this service rather than an Executor bean, so it
+ * does not replace Spring Boot's application task executor.
+ */
+@Service
+public class StripeWebhookProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookProcessor.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final StripeWebhookEventRepository webhookEventRepository;
+    private final StripeService stripeService;
+    private final ThreadPoolTaskExecutor workers;
+
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong gaveUp = new AtomicLong();
+    private final AtomicLong lastProcessingLagMillis = new AtomicLong();
+
+    public StripeWebhookProcessor(
+            StripeWebhookEventRepository webhookEventRepository,
+            StripeService stripeService,
+            @Value("${app.webhook.workers:4}") int workerCount,
+            @Value("${app.webhook.max-in-flight:32}") int maxInFlight,
+            @Value("${app.webhook.max-attempts:8}") int maxAttempts,
+            @Value("${app.webhook.initial-backoff:2s}") Duration initialBackoff,
+            @Value("${app.webhook.max-backoff:10m}") Duration maxBackoff) {
+        this.webhookEventRepository = webhookEventRepository;
+        this.stripeService = stripeService;
+        this.workers = new ThreadPoolTaskExecutor();
+        this.workers.setCorePoolSize(workerCount);
+        this.workers.setMaxPoolSize(workerCount);
+        this.workers.setQueueCapacity(maxInFlight);
+        this.workers.setThreadNamePrefix("webhook-");
+        this.workers.setWaitForTasksToCompleteOnShutdown(true);
+        this.workers.setAwaitTerminationSeconds(30);
+        this.workers.initialize();
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Events left in processing by a previous run never finished; queue them again
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void releaseInFlightEvents() {
+        int released = webhookEventRepository.releaseInFlight();
+        if (released > 0) {
+            log.info("Re-queued {} webhook events left in processing", released);
+        }
+    }
+
+    /**
+     * Claim due events and submit them to the worker pool
+     */
+    @Scheduled(fixedDelayString = "${app.webhook.poll-interval:500ms}")
+    public void poll() {
+        int capacity = inFlight.availablePermits();
+        if (capacity == 0) {
+            return;
+        }
+        List<String> dueIds = webhookEventRepository.findDueIds(LocalDateTime.now(), PageRequest.of(0, capacity));
+        for (String eventId : dueIds) {
+            if (!inFlight.tryAcquire()) {
+                return;
+            }
+            if (webhookEventRepository.claim(eventId) == 0) {
+                // Another instance got it first
+                inFlight.release();
+                continue;
+            }
+            try {
+                workers.execute(() -> process(eventId));
+            } catch (RuntimeException e) {
+                inFlight.release();
+                recordFailure(eventId, e);
+            }
+        }
+    }
+
+    private void process(String eventId) {
+        MDC.put(StripeService.MDC_EVENT_ID, eventId);
+        try {
+            stripeService.applyQueuedEvent(eventId);
+            processed.incrementAndGet();
+            webhookEventRepository.findById(eventId).ifPresent(event -> lastProcessingLagMillis.set(
+                    Duration.between(event.getReceivedAt(), event.getProcessedAt()).toMillis()));
+        } catch (RuntimeException e) {
+            recordFailure(eventId, e);
+        } finally {
+            inFlight.release();
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Schedule a retry with exponential backoff, or park the event as failed
+     */
+    private void recordFailure(String eventId, RuntimeException error) {
+        try {
+            StripeWebhookEvent event = webhookEventRepository.findById(eventId).orElse(null);
+            if (event == null || StripeWebhookEvent.STATUS_PROCESSED.equals(event.getStatus())) {
+                return;
+            }
+            int attempts = event.getAttempts() + 1;
+            event.setAttempts(attempts);
+            event.setLastError(truncate(String.valueOf(error.getMessage())));
+            if (attempts >= maxAttempts) {
+                event.setStatus(StripeWebhookEvent.STATUS_FAILED);
+                gaveUp.incrementAndGet();
+                log.error("Giving up on webhook event {} ({}) after {} attempts", eventId, event.getType(), attempts, error);
+            } else {
+                event.setStatus(StripeWebhookEvent.STATUS_PENDING);
+                event.setNextAttemptAt(LocalDateTime.now().plus(backoff(attempts)));
+                retries.incrementAndGet();
+                log.warn("Webhook event {} ({}) failed on attempt {}, will retry: {}",
+                        eventId, event.getType(), attempts, error.getMessage());
+            }
+            webhookEventRepository.save(event);
+        } catch (RuntimeException e) {
+            // Left in processing; picked up again by releaseInFlightEvents on the next start
+            log.error("Could not record failure of webhook event {}", eventId, e);
+        }
+    }
+
+    /**
+     * initialBackoff * 2^(attempts - 1), capped at maxBackoff
+     */
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    public WebhookQueueStats stats() {
+        return new WebhookQueueStats(
+                webhookEventRepository.countByStatus(StripeWebhookEvent.STATUS_PENDING),
+                webhookEventRepository.countByStatus(StripeWebhookEvent.STATUS_PROCESSING),
+                webhookEventRepository.countByStatus(StripeWebhookEvent.STATUS_FAILED),
+                getInFlight(),
+                oldestPendingAgeMillis(),
+                lastProcessingLagMillis.get(),
+                processed.get(),
+                retries.get(),
+                gaveUp.get(),
+                stripeService.getDuplicateDeliveries()
+        );
+    }
+
+    /**
+     * Events received but not applied yet
+     */
+    public long queueDepth() {
+        return webhookEventRepository.countByStatus(StripeWebhookEvent.STATUS_PENDING)
+                + webhookEventRepository.countByStatus(StripeWebhookEvent.STATUS_PROCESSING);
+    }
+
+    /**
+     * Age of the oldest event not applied yet, 0 when the queue is empty
+     */
+    public long oldestPendingAgeMillis() {
+        LocalDateTime oldest = webhookEventRepository.findOldestUnprocessedReceivedAt();
+        return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis();
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public long getProcessedCount() { return processed.get(); }
+
+    public long getRetryCount() { return retries.get(); }
+
+    public long getGaveUpCount() { return gaveUp.get(); }
+
+    public long getLastProcessingLagMillis() { return lastProcessingLagMillis.get(); }
+}
@@ -0,0 +1,198 @@
+package com.example.ecommerce.stripe;
+
+import com.example.ecommerce.dto.StripeGatewayStats;
+import com.example.ecommerce.exception.PaymentProviderUnavailableException;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.ApiException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.RequestOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single entry point for outbound Stripe API calls
+ *
+ * - Bulkhead: at most max-concurrent calls in flight; a caller waits at most
+ *   acquire-timeout for a slot, so a slow Stripe can't pin every request thread
+ * - Timeouts: every call gets tight connect/read timeouts via RequestOptions
+ * - Circuit breaker: after too many infrastructure failures (connection errors,
+ *   timeouts, 429, 5xx) calls fail fast until half-open probes succeed again
+ *
+ * Rejections and infrastructure failures surface as PaymentProviderUnavailableException (503);
+ * Stripe's answers to bad requests (card declined, invalid params) are rethrown as-is
+ * and count as healthy calls.
+ */
+@Component
+public class StripeGateway {
+
+    /**
+     * A Stripe API call; build the request options from the given builder
+     */
+    @FunctionalInterface
+    public interface StripeCall<T> {
+        T execute(RequestOptions.RequestOptionsBuilder options) throws StripeException;
+    }
+
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMillis;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxNetworkRetries;
+    private final CircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong clientErrors = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bulkheadRejections = new AtomicLong();
+    private final AtomicLong shortCircuits = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    public StripeGateway(
+            @Value("${stripe.client.max-concurrent:16}") int maxConcurrent,
+            @Value("${stripe.client.acquire-timeout:250ms}") Duration acquireTimeout,
+            @Value("${stripe.client.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${stripe.client.read-timeout:8s}") Duration readTimeout,
+            @Value("${stripe.client.max-network-retries:1}") int maxNetworkRetries,
+            @Value("${stripe.client.breaker.window-size:20}") int windowSize,
+            @Value("${stripe.client.breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${stripe.client.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${stripe.client.breaker.open-duration:30s}") Duration openDuration,
+            @Value("${stripe.client.breaker.half-open-probes:3}") int halfOpenProbes,
+            MeterRegistry meterRegistry) {
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+        this.connectTimeoutMillis = (int) connectTimeout.toMillis();
+        this.readTimeoutMillis = (int) readTimeout.toMillis();
+        this.maxNetworkRetries = maxNetworkRetries;
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                openDuration, halfOpenProbes);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run one Stripe API call behind the bulkhead and circuit breaker
+     */
+    public <T> T call(String operation, StripeCall<T> call) throws StripeException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            shortCircuits.incrementAndGet();
+            meterRegistry.counter("app.stripe.rejected", "reason", "circuit_open").increment();
+            throw new PaymentProviderUnavailableException(
+                    "Payment provider is temporarily unavailable, please try again shortly",
+                    retryAfterSeconds());
+        }
+        if (!acquireSlot()) {
+            // Not Stripe's fault, so no outcome for the breaker
+            circuitBreaker.releasePermission();
+            bulkheadRejections.incrementAndGet();
+            meterRegistry.counter("app.stripe.rejected", "reason", "bulkhead_full").increment();
+            throw new PaymentProviderUnavailableException(
+                    "Too many concurrent payment requests, please try again", 1);
+        }
+
+        calls.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "failure";
+        try {
+            T result = call.execute(RequestOptions.builder()
+                    .setConnectTimeout(connectTimeoutMillis)
+                    .setReadTimeout(readTimeoutMillis)
+                    .setMaxNetworkRetries(maxNetworkRetries));
+            successes.incrementAndGet();
+            circuitBreaker.onSuccess();
+            outcome = "success";
+            return result;
+        } catch (StripeException e) {
+            if (!isInfrastructureFailure(e)) {
+                clientErrors.incrementAndGet();
+                circuitBreaker.onSuccess();
+                outcome = "client_error";
+                throw e;
+            }
+            failures.incrementAndGet();
+            circuitBreaker.onFailure();
+            throw new PaymentProviderUnavailableException(
+                    "Payment provider call failed (" + operation + "): " + e.getMessage(), retryAfterSeconds(), e);
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            circuitBreaker.onFailure();
+            throw e;
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            recordLatency(elapsedNanos / 1_000_000);
+            Timer.builder("app.stripe.calls")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+            bulkhead.release();
+        }
+    }
+
+    private boolean acquireSlot() {
+        try {
+            return bulkhead.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Helper method: failures that say Stripe (or the network to it) is unhealthy
+     */
+    private boolean isInfrastructureFailure(StripeException e) {
+        if (e instanceof ApiConnectionException || e instanceof ApiException || e instanceof RateLimitException) {
+            return true;
+        }
+        return e.getStatusCode() != null && e.getStatusCode() >= 500;
+    }
+
+    private long retryAfterSeconds() {
+        long millis = circuitBreaker.remainingOpenMillis();
+        return millis == 0 ? 1 : (millis + 999) / 1000;
+    }
+
+    private void recordLatency(long millis) {
+        totalLatencyMillis.addAndGet(millis);
+        maxLatencyMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int getInFlight() {
+        return maxConcurrent - bulkhead.availablePermits();
+    }
+
+    public StripeGatewayStats stats() {
+        long completed = calls.get();
+        return new StripeGatewayStats(
+                circuitBreaker.getState().name(),
+                getInFlight(),
+                maxConcurrent,
+                completed,
+                successes.get(),
+                clientErrors.get(),
+                failures.get(),
+                bulkheadRejections.get(),
+                shortCircuits.get(),
+                completed == 0 ? 0 : totalLatencyMillis.get() / completed,
+                maxLatencyMillis.get()
+        );
+    }
+}
@@ -0,0 +1,22 @@
+-- Stripe checkout objects that came after the baseline: the webhook intake queue (StripeWebhookEvent)
+-- and the checkout session reused per order (Order.stripeSession*).
+-- Runs right after V1, so it also runs on databases baselined at V1. IF NOT EXISTS: a database that
+-- ddl-auto=update kept in step with a later build may already have some of these.
+
+ALTER TABLE orders
+    ADD COLUMN IF NOT EXISTS stripe_session_id          VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS stripe_session_url         VARCHAR(2048),
+    ADD COLUMN IF NOT EXISTS stripe_session_expires_at  TIMESTAMP(6),
+    ADD COLUMN IF NOT EXISTS stripe_session_fingerprint VARCHAR(64);
+
+CREATE TABLE IF NOT EXISTS stripe_webhook_events (
+    id              VARCHAR(255) PRIMARY KEY,
+    type            VARCHAR(255) NOT NULL,
+    payload         TEXT         NOT NULL,
+    status          VARCHAR(20)  NOT NULL,
+    attempts        INTEGER      NOT NULL,
+    next_attempt_at TIMESTAMP(6) NOT NULL,
+    received_at     TIMESTAMP(6) NOT NULL,
+    processed_at    TIMESTAMP(6),
+    last_error      VARCHAR(1000)
+);
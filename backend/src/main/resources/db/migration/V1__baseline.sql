@@ -0,0 +1,58 @@
+-- Baseline: the schema as Hibernate (ddl-auto=update) created it for the entities of the last release before
+-- migrations were introduced; everything added since is in later versions (V1_1 onwards).
+-- Existing databases are baselined at this version (spring.flyway.baseline-on-migrate) and skip it.
+
+CREATE TABLE users (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email    VARCHAR(255) NOT NULL,
+    name     VARCHAR(255),
+    password VARCHAR(255),
+    role     VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_users_email UNIQUE (email),
+    CONSTRAINT users_role_check CHECK (role IN ('USER', 'ADMIN'))
+);
+
+CREATE TABLE products (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name        VARCHAR(255)   NOT NULL,
+    price       NUMERIC(38, 2) NOT NULL,
+    stock       INTEGER        NOT NULL,
+    image_url   VARCHAR(255),
+    category    VARCHAR(100),
+    description VARCHAR(1000)
+);
+
+CREATE TABLE carts (
+    id      BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    CONSTRAINT uk_carts_user UNIQUE (user_id),
+    CONSTRAINT fk_carts_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE cart_items (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    cart_id    BIGINT  NOT NULL,
+    product_id BIGINT  NOT NULL,
+    quantity   INTEGER NOT NULL,
+    CONSTRAINT fk_cart_items_cart FOREIGN KEY (cart_id) REFERENCES carts (id),
+    CONSTRAINT fk_cart_items_product FOREIGN KEY (product_id) REFERENCES products (id)
+);
+
+CREATE TABLE orders (
+    id                         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id                    BIGINT         NOT NULL,
+    total                      NUMERIC(38, 2) NOT NULL,
+    status                     VARCHAR(255)   NOT NULL,
+    created_at                 TIMESTAMP(6)   NOT NULL,
+    shipping_address           VARCHAR(255)
+);
+
+CREATE TABLE order_items (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id     BIGINT         NOT NULL,
+    product_id   BIGINT         NOT NULL,
+    product_name VARCHAR(255)   NOT NULL,
+    price        NUMERIC(38, 2) NOT NULL,
+    quantity     INTEGER        NOT NULL,
+    CONSTRAINT fk_order_items_order FOREIGN KEY (order_id) REFERENCES orders (id)
+);
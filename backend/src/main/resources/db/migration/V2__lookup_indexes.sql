@@ -0,0 +1,38 @@
+-- Indexes for the repository lookups; until now only primary keys and the unique columns were indexed.
+
+-- One line per product in a cart. ddl-auto never enforced this, so merge any duplicate lines first
+-- (quantities are added into the oldest line) before the constraint can be created.
+UPDATE cart_items keep
+SET quantity = dup.total_quantity
+FROM (
+    SELECT MIN(id) AS keep_id, SUM(quantity) AS total_quantity
+    FROM cart_items
+    GROUP BY cart_id, product_id
+    HAVING COUNT(*) > 1
+) dup
+WHERE keep.id = dup.keep_id;
+
+DELETE FROM cart_items ci
+USING cart_items older
+WHERE older.cart_id = ci.cart_id
+  AND older.product_id = ci.product_id
+  AND older.id < ci.id;
+
+-- CartItemRepository.findByCartIdAndProductId; the leading cart_id also serves cart loading
+ALTER TABLE cart_items ADD CONSTRAINT uk_cart_items_cart_product UNIQUE (cart_id, product_id);
+
+-- OrderRepository.findByUserIdOrderByCreatedAtDesc (filter and sort from the index)
+CREATE INDEX idx_orders_user_created_at ON orders (user_id, created_at DESC);
+
+-- Admin listing of open orders (status = 'pending'), newest first; pending orders are a small slice of the table
+CREATE INDEX idx_orders_pending_created_at ON orders (created_at DESC) WHERE status = 'pending';
+
+-- ProductRepository.findByCategory (also the keyset pagination within a category)
+CREATE INDEX idx_products_category_id ON products (category, id);
+
+-- Loading an order's items (order_id is a foreign key without an index)
+CREATE INDEX idx_order_items_order_id ON order_items (order_id);
+
+-- Webhook queue polling (findDueIds, findOldestUnprocessedReceivedAt) only looks at unprocessed events
+CREATE INDEX idx_stripe_webhook_events_unprocessed ON stripe_webhook_events (received_at)
+    WHERE status IN ('pending', 'processing');
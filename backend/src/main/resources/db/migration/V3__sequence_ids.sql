@@ -0,0 +1,29 @@
+-- Sequence ids instead of IDENTITY columns: Hibernate cannot batch inserts into IDENTITY tables,
+-- because it needs each generated id back before it can continue.
+-- Entities use a pooled optimizer with allocationSize = 50, so one nextval reserves 50 ids. The
+-- sequences must step by the same amount, and each starts at MAX(id) + 50 because the pooled
+-- optimizer uses the block (value - 49 .. value) of the first value it reads.
+
+CREATE SEQUENCE users_seq INCREMENT BY 50;
+SELECT setval('users_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM users), false);
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE products_seq INCREMENT BY 50;
+SELECT setval('products_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM products), false);
+ALTER TABLE products ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE carts_seq INCREMENT BY 50;
+SELECT setval('carts_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM carts), false);
+ALTER TABLE carts ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE cart_items_seq INCREMENT BY 50;
+SELECT setval('cart_items_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM cart_items), false);
+ALTER TABLE cart_items ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE orders_seq INCREMENT BY 50;
+SELECT setval('orders_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM orders), false);
+ALTER TABLE orders ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE order_items_seq INCREMENT BY 50;
+SELECT setval('order_items_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM order_items), false);
+ALTER TABLE order_items ALTER COLUMN id DROP IDENTITY;
@@ -0,0 +1,6 @@
+-- Optimistic locking for carts: every change to a cart moves carts.version on by one (compare-and-set),
+-- and cart_items.version guards each line (Hibernate @Version). Clients can send the cart version
+-- back as If-Match to make a change conditional.
+
+ALTER TABLE carts ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE cart_items ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,23 @@
+-- Transactional outbox for order domain events (OrderCreated, OrderPaid, OrderShipped).
+-- Events are inserted in the same transaction as the order change that raises them, and delivered
+-- afterwards by OutboxDispatcher, which locks batches of due rows with FOR UPDATE SKIP LOCKED.
+
+CREATE SEQUENCE outbox_events_seq INCREMENT BY 50;
+
+CREATE TABLE outbox_events (
+    id BIGINT PRIMARY KEY,
+    event_type VARCHAR(50) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP(6) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    dispatched_at TIMESTAMP(6),
+    last_error VARCHAR(1000)
+);
+
+-- The dispatcher's scan, and the "no earlier pending event for this order" check that keeps
+-- each order's events in order; both only look at pending rows
+CREATE INDEX idx_outbox_events_pending_due ON outbox_events (next_attempt_at, id) WHERE status = 'pending';
+CREATE INDEX idx_outbox_events_pending_aggregate ON outbox_events (aggregate_id, id) WHERE status = 'pending';
@@ -0,0 +1,23 @@
+-- Per-order event sequence for the outbox. Event ids come from a pooled sequence and every
+-- instance caches its own block, so across instances ids do not follow commit order; each
+-- order instead counts its events in orders.event_seq, bumped (and so row-locked) by the
+-- transaction that writes the event, and the event carries the number as aggregate_seq.
+
+ALTER TABLE orders ADD COLUMN event_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE outbox_events ADD COLUMN aggregate_seq BIGINT;
+
+-- Events already written were written by one instance at a time, so their ids are in order
+UPDATE outbox_events e SET aggregate_seq = numbered.seq
+FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY aggregate_id ORDER BY id) AS seq FROM outbox_events) numbered
+WHERE numbered.id = e.id;
+
+UPDATE orders o SET event_seq = last_event.seq
+FROM (SELECT aggregate_id, MAX(aggregate_seq) AS seq FROM outbox_events GROUP BY aggregate_id) last_event
+WHERE last_event.aggregate_id = o.id;
+
+ALTER TABLE outbox_events ALTER COLUMN aggregate_seq SET NOT NULL;
+ALTER TABLE outbox_events ADD CONSTRAINT uk_outbox_events_aggregate_seq UNIQUE (aggregate_id, aggregate_seq);
+
+-- The "no earlier pending event for this order" check now compares aggregate_seq
+DROP INDEX idx_outbox_events_pending_aggregate;
+CREATE INDEX idx_outbox_events_pending_aggregate ON outbox_events (aggregate_id, aggregate_seq) WHERE status = 'pending';
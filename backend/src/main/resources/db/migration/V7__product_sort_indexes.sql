@@ -0,0 +1,7 @@
+-- Keyset pagination by price and by name (ProductService.getProductPage), over all products and
+-- within a category: the sort column then id, so pages are read from the index in order instead of
+-- sorting the table for every page. (category, id) from V2 serves the id sort within a category.
+CREATE INDEX idx_products_price_id ON products (price, id);
+CREATE INDEX idx_products_name_id ON products (name, id);
+CREATE INDEX idx_products_category_price_id ON products (category, price, id);
+CREATE INDEX idx_products_category_name_id ON products (category, name, id);
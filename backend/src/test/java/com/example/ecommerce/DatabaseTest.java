@@ -0,0 +1,47 @@
+package com.example.ecommerce;
+
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.model.Role;
+import com.example.ecommerce.model.User;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Base class for tests against the test database (application-test.properties)
+ * All subclasses share one application context; tests create their own users and
+ * products instead of relying on (or cleaning up) what is already there
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+public abstract class DatabaseTest {
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected ProductRepository productRepository;
+
+    protected Long createUser() {
+        return userRepository.save(User.builder()
+                .name("Test User")
+                .email("test-" + UUID.randomUUID() + "@example.com")
+                .password("not-a-hash")
+                .role(Role.USER)
+                .build()).getId();
+    }
+
+    protected Long createProduct(String price, int stock) {
+        return productRepository.save(Product.builder()
+                .name("Test product " + UUID.randomUUID())
+                .price(new BigDecimal(price))
+                .stock(stock)
+                .category("test")
+                .build()).getId();
+    }
+}
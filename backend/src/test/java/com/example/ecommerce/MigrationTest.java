@@ -0,0 +1,120 @@
+package com.example.ecommerce;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flyway migrations: upgrading a database baselined at V1, and the lookup indexes of V2 and V7
+ */
+class MigrationTest extends DatabaseTest {
+
+    private static final String UPGRADE_SCHEMA = "baseline_upgrade_test";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void dropUpgradeSchema() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + UPGRADE_SCHEMA + " CASCADE");
+    }
+
+    /**
+     * An existing database (tables, no Flyway history) is baselined at V1 and must get every later object
+     */
+    @Test
+    void databaseBaselinedAtV1GetsEverythingAddedSince() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + UPGRADE_SCHEMA + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + UPGRADE_SCHEMA);
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET search_path TO " + UPGRADE_SCHEMA);
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V1__baseline.sql"));
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("RESET search_path");
+                }
+            }
+            return null;
+        });
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(UPGRADE_SCHEMA)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns "
+                + "WHERE table_schema = ? AND table_name = 'orders' AND column_name LIKE 'stripe_session%'",
+                Long.class, UPGRADE_SCHEMA));
+        for (String table : List.of("stripe_webhook_events", "outbox_events")) {
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables "
+                    + "WHERE table_schema = ? AND table_name = ?", Long.class, UPGRADE_SCHEMA, table), table);
+        }
+        assertEquals("1", jdbcTemplate.queryForObject("SELECT version FROM " + UPGRADE_SCHEMA
+                + ".flyway_schema_history WHERE type = 'BASELINE'", String.class));
+    }
+
+    /**
+     * The repository lookups can use their indexes
+     * Sequential scans are disabled, since on a small test database they would win on cost anyway
+     * The category looked up is one no test product has: the tests put all their products in
+     * "test", for which walking the primary key really is cheaper
+     */
+    @Test
+    void lookupsUseTheirIndexes() {
+        jdbcTemplate.execute("ANALYZE products");
+        assertIndexUsed("SELECT * FROM orders WHERE user_id = 1 ORDER BY created_at DESC",
+                "idx_orders_user_created_at");
+        assertIndexUsed("SELECT * FROM orders WHERE status = 'pending' ORDER BY created_at DESC LIMIT 20",
+                "idx_orders_pending_created_at");
+        assertIndexUsed("SELECT * FROM products WHERE category = 'kitchen' AND id > 10 ORDER BY id LIMIT 20",
+                "idx_products_category_id");
+        // The keyset conditions ProductService.getProductPage gets from Spring Data, by price and by name
+        assertIndexUsed("SELECT * FROM products WHERE price > 5 OR (price = 5 AND id > 10) "
+                + "ORDER BY price, id LIMIT 21", "idx_products_price_id");
+        assertIndexUsed("SELECT * FROM products WHERE name < 'm' OR (name = 'm' AND id < 10) "
+                + "ORDER BY name DESC, id DESC LIMIT 21", "idx_products_name_id");
+        assertIndexUsed("SELECT * FROM products WHERE category = 'kitchen' AND (price > 5 OR (price = 5 AND id > 10)) "
+                + "ORDER BY price, id LIMIT 21", "idx_products_category_price_id");
+        assertIndexUsed("SELECT * FROM products WHERE category = 'kitchen' AND (name > 'm' OR (name = 'm' AND id > 10)) "
+                + "ORDER BY name, id LIMIT 21", "idx_products_category_name_id");
+        assertIndexUsed("SELECT * FROM order_items WHERE order_id = 1",
+                "idx_order_items_order_id");
+        assertIndexUsed("SELECT * FROM cart_items WHERE cart_id = 1 AND product_id = 1",
+                "uk_cart_items_cart_product");
+        assertIndexUsed("SELECT id FROM stripe_webhook_events WHERE status = 'pending' "
+                + "AND next_attempt_at <= now() ORDER BY received_at LIMIT 32",
+                "idx_stripe_webhook_events_unprocessed");
+    }
+
+    private void assertIndexUsed(String query, String index) {
+        String plan = new TransactionTemplate(transactionManager).execute(status -> {
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + query, String.class));
+        });
+        assertTrue(plan.contains(index), () -> "Expected " + index + " in the plan of " + query + ":\n" + plan);
+    }
+}
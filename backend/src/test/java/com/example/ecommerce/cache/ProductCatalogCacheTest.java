@@ -0,0 +1,72 @@
+package com.example.ecommerce.cache;
+
+import com.example.ecommerce.dto.ProductResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Read-miss fills racing with writes (see the ProductCatalogCache class comment)
+ */
+class ProductCatalogCacheTest {
+
+    private final ProductCatalogCache cache = new ProductCatalogCache(3, 10);
+
+    @Test
+    void fillReadBeforeAnUpdateDoesNotOverwriteIt() {
+        ProductCatalogCache.ReadStamp stamp = cache.beginRead();
+        cache.productSaved(product(1L, 5), "mugs", false);
+
+        cache.put(product(1L, 9), stamp);
+
+        assertEquals(5, cache.get(1L).getStock());
+    }
+
+    @Test
+    void fillReadBeforeAStockChangeIsDropped() {
+        ProductCatalogCache.ReadStamp stamp = cache.beginRead();
+        cache.evict(List.of(1L));
+
+        cache.put(product(1L, 9), stamp);
+
+        assertNull(cache.get(1L));
+        cache.put(product(1L, 8), cache.beginRead());
+        assertEquals(8, cache.get(1L).getStock());
+    }
+
+    @Test
+    void fillOfAnotherProductIsKept() {
+        ProductCatalogCache.ReadStamp stamp = cache.beginRead();
+        cache.evict(List.of(1L));
+
+        cache.put(product(2L, 9), stamp);
+
+        assertEquals(9, cache.get(2L).getStock());
+    }
+
+    @Test
+    void listingReadBeforeADeleteIsDropped() {
+        ProductCatalogCache.ReadStamp stamp = cache.beginRead();
+        cache.productDeleted(2L, "mugs");
+
+        cache.putListing("mugs", List.of(1L, 2L), stamp);
+
+        assertNull(cache.getListing("mugs"));
+    }
+
+    @Test
+    void listingLongerThanTheProductCacheIsNotCached() {
+        cache.putListing(null, List.of(1L, 2L, 3L, 4L), cache.beginRead());
+        assertNull(cache.getListing(null));
+
+        cache.putListing(null, List.of(1L, 2L, 3L), cache.beginRead());
+        assertEquals(List.of(1L, 2L, 3L), cache.getListing(null));
+    }
+
+    private ProductResponse product(Long id, int stock) {
+        return ProductResponse.builder().id(id).name("Mug " + id).stock(stock).category("mugs").build();
+    }
+}
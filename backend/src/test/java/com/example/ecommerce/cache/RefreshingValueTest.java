@@ -0,0 +1,30 @@
+package com.example.ecommerce.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RefreshingValueTest {
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @Test
+    void readingIsReusedWithinTheInterval() {
+        RefreshingValue<Integer> value = new RefreshingValue<>(Duration.ofHours(1), reads::incrementAndGet);
+
+        assertEquals(1, value.get());
+        assertEquals(1, value.get());
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    void readingIsRepeatedOnceTheIntervalHasPassed() {
+        RefreshingValue<Integer> value = new RefreshingValue<>(Duration.ZERO, reads::incrementAndGet);
+
+        assertEquals(1, value.get());
+        assertEquals(2, value.get());
+    }
+}
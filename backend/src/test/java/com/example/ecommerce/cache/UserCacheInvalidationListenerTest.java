@@ -0,0 +1,89 @@
+package com.example.ecommerce.cache;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.model.Role;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserCacheInvalidationListenerTest extends DatabaseTest {
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void emailChangeEvictsThePrincipalCachedUnderTheOldEmail() {
+        Long userId = createUser();
+        String oldEmail = userRepository.findById(userId).orElseThrow().getEmail();
+        String newEmail = "renamed-" + UUID.randomUUID() + "@example.com";
+        principal(oldEmail);
+        principal(newEmail);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                userRepository.findById(userId).orElseThrow().setEmail(newEmail));
+
+        principal(oldEmail);
+        principal(newEmail);
+        assertEquals(4, loads.get(), "both emails are loaded again");
+    }
+
+    @Test
+    void roleChangeEvictsThePrincipal() {
+        Long userId = createUser();
+        String email = userRepository.findById(userId).orElseThrow().getEmail();
+        principal(email);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                userRepository.findById(userId).orElseThrow().setRole(Role.ADMIN));
+
+        principal(email);
+        principal(email);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void missThatReadTheOldRowDoesNotFillAfterTheEviction() {
+        Long userId = createUser();
+        String email = userRepository.findById(userId).orElseThrow().getEmail();
+
+        // The miss has read the row, then the role change commits before it fills
+        principalCache.get(email, e -> {
+            UserDetails old = load(e);
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    userRepository.findById(userId).orElseThrow().setRole(Role.ADMIN));
+            return old;
+        });
+        assertEquals(1, loads.get());
+
+        principal(email);
+        principal(email);
+        assertEquals(2, loads.get(), "the old principal was not cached");
+    }
+
+    /**
+     * Helper method: what JwtAuthenticationFilter does, counting the database loads
+     */
+    private UserDetails principal(String email) {
+        return principalCache.get(email, this::load);
+    }
+
+    private UserDetails load(String email) {
+        loads.incrementAndGet();
+        return org.springframework.security.core.userdetails.User.withUsername(email)
+                .password("not-a-hash")
+                .roles(Role.USER.name())
+                .build();
+    }
+}
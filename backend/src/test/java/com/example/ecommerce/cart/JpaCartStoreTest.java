@@ -0,0 +1,159 @@
+package com.example.ecommerce.cart;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.dto.CartBatchResponse;
+import com.example.ecommerce.dto.CartOperationRequest;
+import com.example.ecommerce.dto.CartOperationResult;
+import com.example.ecommerce.dto.CartResponse;
+import com.example.ecommerce.exception.PreconditionFailedException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The default (jpa) store: the single-statement upsert, and batches
+ */
+class JpaCartStoreTest extends DatabaseTest {
+
+    private static final int PARALLEL_ADDS = 16;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void parallelAddsOfOneProductEndUpAsOneLineWithTheSummedQuantity() throws Exception {
+        Long userId = createUser();
+        Long productId = createProduct("3.00", 100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_ADDS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> adds = new ArrayList<>();
+            for (int i = 0; i < PARALLEL_ADDS; i++) {
+                adds.add(executor.submit(() -> {
+                    start.await();
+                    return cartStore.addItem(userId, productId, 2, null);
+                }));
+            }
+            start.countDown();
+            for (Future<?> add : adds) {
+                add.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Map<String, Object>> lines = jdbcTemplate.queryForList("SELECT ci.product_id, ci.quantity "
+                + "FROM cart_items ci JOIN carts c ON c.id = ci.cart_id WHERE c.user_id = ?", userId);
+        assertEquals(List.of(Map.of("product_id", productId, "quantity", 2 * PARALLEL_ADDS)), lines);
+        assertEquals(PARALLEL_ADDS, cartVersion(userId), "every add moves the version on exactly once");
+    }
+
+    @Test
+    void addOfAnUnknownProductLeavesTheVersionAlone() {
+        Long userId = createUser();
+        cartStore.addItem(userId, createProduct("1.00", 10), 1, null);
+        long version = cartVersion(userId);
+
+        assertThrows(RuntimeException.class, () -> cartStore.addItem(userId, -1L, 1, null));
+
+        assertEquals(version, cartVersion(userId));
+        assertEquals(version, cartStore.getCart(userId).getVersion());
+    }
+
+    @Test
+    void addAgainstAStaleVersionFailsWithoutChangingTheCart() {
+        Long userId = createUser();
+        Long productId = createProduct("1.00", 10);
+        cartStore.addItem(userId, productId, 1, null);
+        long version = cartVersion(userId);
+
+        assertThrows(PreconditionFailedException.class, () -> cartStore.addItem(userId, productId, 1, version - 1));
+
+        assertEquals(version, cartVersion(userId));
+        assertEquals(1, cartStore.getCart(userId).getItems().get(0).getQuantity());
+        assertEquals(version + 1, cartStore.addItem(userId, productId, 1, version).getVersion());
+    }
+
+    @Test
+    void batchSkipsOperationsThatDoNotApplyAndCommitsTheRest() {
+        Long userId = createUser();
+        Long first = createProduct("1.00", 10);
+        Long second = createProduct("2.00", 10);
+        CartResponse cart = cartStore.addItem(userId, first, 1, null);
+        Long firstLine = cart.getItems().get(0).getId();
+
+        CartBatchResponse response = cartStore.applyBatch(userId, List.of(
+                new CartOperationRequest(CartOperationRequest.Type.UPDATE, null, firstLine, 3),
+                new CartOperationRequest(CartOperationRequest.Type.ADD, -1L, null, 1),
+                new CartOperationRequest(CartOperationRequest.Type.ADD, second, null, 2),
+                new CartOperationRequest(CartOperationRequest.Type.REMOVE, null, -1L, null)), null);
+
+        List<CartOperationResult> results = response.getResults();
+        assertTrue(results.get(0).isApplied());
+        assertFalse(results.get(1).isApplied());
+        assertEquals("Product not found", results.get(1).getError());
+        assertTrue(results.get(2).isApplied());
+        assertFalse(results.get(3).isApplied());
+        assertEquals(Map.of(first, 3, second, 2), quantities(userId));
+        assertEquals(cart.getVersion() + 1, response.getCart().getVersion());
+        assertEquals(cart.getVersion() + 1, cartVersion(userId));
+    }
+
+    @Test
+    void batchThatRemovesAndAddsBackAProductWritesInOneFlush() {
+        Long userId = createUser();
+        Long first = createProduct("1.00", 10);
+        Long second = createProduct("2.00", 10);
+        Long firstLine = cartStore.addItem(userId, first, 1, null).getItems().get(0).getId();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long flushes = statistics.getFlushCount();
+
+        CartBatchResponse response = cartStore.applyBatch(userId, List.of(
+                new CartOperationRequest(CartOperationRequest.Type.REMOVE, null, firstLine, null),
+                new CartOperationRequest(CartOperationRequest.Type.ADD, second, null, 1),
+                new CartOperationRequest(CartOperationRequest.Type.ADD, first, null, 4)), null);
+
+        // The one before the version compare-and-set, and the commit's, which finds nothing left to write
+        assertEquals(2, statistics.getFlushCount() - flushes);
+        assertEquals(firstLine, response.getResults().get(2).getCartItemId(), "the removed line is put back");
+        assertEquals(Map.of(first, 4, second, 1), quantities(userId));
+    }
+
+    private Map<Long, Integer> quantities(Long userId) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query("SELECT ci.product_id, ci.quantity FROM cart_items ci JOIN carts c ON c.id = ci.cart_id "
+                + "WHERE c.user_id = ?", row -> {
+            quantities.put(row.getLong(1), row.getInt(2));
+        }, userId);
+        return quantities;
+    }
+
+    private long cartVersion(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT version FROM carts WHERE user_id = ?", Long.class, userId);
+    }
+}
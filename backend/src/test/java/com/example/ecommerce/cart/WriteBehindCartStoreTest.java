@@ -0,0 +1,220 @@
+package com.example.ecommerce.cart;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.dto.CartItemResponse;
+import com.example.ecommerce.dto.CartResponse;
+import com.example.ecommerce.service.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Durability of the write-behind cart store (see the WriteBehindCartStore class comment)
+ * Each test builds its own store, so nothing is flushed behind its back by the scheduler
+ */
+class WriteBehindCartStoreTest extends DatabaseTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProductService productService;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private MeterRegistry meterRegistry;
+    private WriteBehindCartStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = newStore(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void repeatedChangesToALineAreWrittenOnceWithTheLatestQuantity() {
+        Long userId = createUser();
+        Long productId = createProduct("2.50", 100);
+
+        for (int i = 0; i < 5; i++) {
+            store.addItem(userId, productId, 1, null);
+        }
+        Long lineId = store.getCart(userId).getItems().get(0).getId();
+        store.updateItem(userId, lineId, 7, null);
+        assertEquals(1, store.dirtyCount());
+        assertTrue(lines(userId).isEmpty(), "nothing is written before the flush");
+
+        store.flushDirty();
+
+        assertEquals(List.of(Map.of("id", lineId, "quantity", 7)), lines(userId));
+        assertEquals(1, meterRegistry.counter("app.carts.flushed").count());
+        assertEquals(1, meterRegistry.timer("app.carts.flush").count());
+        assertEquals(0, store.dirtyCount());
+    }
+
+    @Test
+    void shutdownWritesPendingChanges() {
+        Long userId = createUser();
+        Long productId = createProduct("4.00", 100);
+        store.addItem(userId, productId, 3, null);
+
+        store.flushOnShutdown();
+
+        CartResponse reloaded = newStore(new SimpleMeterRegistry()).getCart(userId);
+        assertEquals(1, reloaded.getItems().size());
+        assertEquals(3, reloaded.getItems().get(0).getQuantity());
+        assertEquals(productId, reloaded.getItems().get(0).getProductId());
+    }
+
+    @Test
+    void flushInsideATransactionIsRejected() {
+        Long userId = createUser();
+        store.addItem(userId, createProduct("1.00", 10), 1, null);
+
+        assertThrows(IllegalStateException.class, () -> new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> store.flush(userId)));
+    }
+
+    /**
+     * A line added after the order flushed the cart is picked up by a background flush,
+     * which then waits for the order's carts row lock; once the order has cleared the
+     * cart and committed, the flush must not write the line back
+     */
+    @Test
+    void clearDuringABackgroundFlushDoesNotBringLinesBack() throws Exception {
+        Long userId = createUser();
+        store.addItem(userId, createProduct("1.00", 10), 1, null);
+        store.flush(userId);
+        Long lateProductId = createProduct("2.00", 10);
+
+        List<Future<?>> flush = new ArrayList<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            lockCart(userId);
+            flush.add(startBlockedFlush(userId, lateProductId));
+            store.clear(userId);
+            assertFalse(flush.get(0).isDone());
+        });
+        flush.get(0).get(10, TimeUnit.SECONDS);
+
+        assertTrue(lines(userId).isEmpty());
+        assertTrue(store.getCart(userId).getItems().isEmpty());
+        store.flushDirty();
+        assertTrue(lines(userId).isEmpty());
+        assertTrue(newStore(new SimpleMeterRegistry()).getCart(userId).getItems().isEmpty());
+    }
+
+    @Test
+    void clearThatRollsBackKeepsEveryLine() throws Exception {
+        Long userId = createUser();
+        store.addItem(userId, createProduct("1.00", 10), 1, null);
+        store.flush(userId);
+        Long lateProductId = createProduct("2.00", 10);
+
+        List<Future<?>> flush = new ArrayList<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            lockCart(userId);
+            flush.add(startBlockedFlush(userId, lateProductId));
+            store.clear(userId);
+            status.setRollbackOnly();
+        });
+        flush.get(0).get(10, TimeUnit.SECONDS);
+        store.flushDirty();
+
+        assertEquals(2, lines(userId).size());
+        assertEquals(2, store.getCart(userId).getItems().size());
+    }
+
+    /**
+     * A line whose product was deleted before it was written can never be: it is dropped, and
+     * neither the rest of its cart nor the other carts are held back
+     */
+    @Test
+    void lineWhoseProductWasDeletedIsDropped() {
+        Long goodUser = createUser();
+        Long badUser = createUser();
+        Long goodProduct = createProduct("1.00", 10);
+        Long keptProduct = createProduct("1.00", 10);
+        Long doomedProduct = createProduct("1.00", 10);
+        store.addItem(goodUser, goodProduct, 2, null);
+        store.addItem(badUser, keptProduct, 1, null);
+        store.addItem(badUser, doomedProduct, 1, null);
+        jdbcTemplate.update("DELETE FROM products WHERE id = ?", doomedProduct);
+
+        store.flushDirty();
+
+        assertEquals(1, lines(goodUser).size());
+        assertEquals(1, lines(badUser).size());
+        assertEquals(0, store.dirtyCount());
+        assertEquals(0, meterRegistry.counter("app.carts.flush.failures").count());
+        assertEquals(2, meterRegistry.counter("app.carts.flushed").count());
+        assertEquals(1, meterRegistry.counter("app.carts.lines.dropped").count());
+
+        // The order's flush goes through, and the cart is what the user was shown
+        store.flush(badUser);
+        assertEquals(List.of(keptProduct), store.getCart(badUser).getItems().stream()
+                .map(CartItemResponse::getProductId).toList());
+        assertEquals(1, newStore(new SimpleMeterRegistry()).getCart(badUser).getItems().size());
+    }
+
+    private WriteBehindCartStore newStore(MeterRegistry registry) {
+        return new WriteBehindCartStore(jdbcTemplate, transactionManager, productService, userRepository,
+                registry, Duration.ofMinutes(30));
+    }
+
+    private List<Map<String, Object>> lines(Long userId) {
+        return jdbcTemplate.queryForList("SELECT ci.id, ci.quantity FROM cart_items ci "
+                + "JOIN carts c ON c.id = ci.cart_id WHERE c.user_id = ? ORDER BY ci.id", userId);
+    }
+
+    /**
+     * Helper method: what OrderService does first, in the caller's transaction
+     */
+    private void lockCart(Long userId) {
+        jdbcTemplate.queryForObject("SELECT id FROM carts WHERE user_id = ? FOR UPDATE", Long.class, userId);
+    }
+
+    /**
+     * Helper method: add a line and start a background flush, returning once the flush waits for the cart lock
+     */
+    private Future<?> startBlockedFlush(Long userId, Long productId) {
+        store.addItem(userId, productId, 1, null);
+        Future<?> flush = executor.submit(store::flushDirty);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pg_stat_activity "
+                + "WHERE datname = current_database() AND wait_event_type = 'Lock'", Long.class) == 0) {
+            if (System.currentTimeMillis() > deadline || flush.isDone()) {
+                throw new AssertionError("The background flush never waited for the cart lock");
+            }
+            LockSupport.parkNanos(Duration.ofMillis(10).toNanos());
+        }
+        return flush;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.ecommerce.outbox;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.model.OutboxEvent;
+import com.example.ecommerce.repository.OutboxEventRepository;
+import com.example.ecommerce.service.CartService;
+import com.example.ecommerce.service.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Outbox delivery: per-order order, retries with backoff, and concurrent pollers
+ * Each test runs its own dispatcher with its own handler; events of other tests' orders
+ * are delivered along the way and ignored
+ */
+class OutboxDispatcherTest extends DatabaseTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void orderEventsAreDeliveredInTheOrderTheyWereWritten() {
+        Long orderId = createOrder();
+        orderService.updateOrderStatus(orderId, "paid");
+        orderService.updateOrderStatus(orderId, "shipped");
+
+        assertEquals(List.of(1L, 2L, 3L), events(orderId).stream().map(OutboxEvent::getAggregateSeq).toList());
+        // Ids from another instance's block: the last event gets the lowest id
+        jdbcTemplate.update("UPDATE outbox_events SET id = -id WHERE aggregate_id = ?", orderId);
+
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        OutboxDispatcher dispatcher = dispatcher(3, event -> {
+            if (event.getOrderId().equals(orderId)) {
+                delivered.add(event.getType());
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            dispatcher.poll();
+        }
+
+        assertEquals(List.of(OrderEvent.ORDER_CREATED, OrderEvent.ORDER_PAID, OrderEvent.ORDER_SHIPPED), delivered);
+    }
+
+    @Test
+    void failingHandlerIsRetriedWithBackoffThenParked() {
+        Long orderId = createOrder();
+        orderService.updateOrderStatus(orderId, "paid");
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        OutboxDispatcher dispatcher = dispatcher(3, event -> {
+            if (event.getOrderId().equals(orderId)) {
+                delivered.add(event.getType());
+                if (OrderEvent.ORDER_CREATED.equals(event.getType())) {
+                    throw new IllegalStateException("Handler down");
+                }
+            }
+        });
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.poll();
+        OutboxEvent created = events(orderId).get(0);
+        assertEquals(OutboxEvent.STATUS_PENDING, created.getStatus());
+        assertEquals(1, created.getAttempts());
+        assertEquals("Handler down", created.getLastError());
+        assertTrue(!created.getNextAttemptAt().isBefore(before.plusSeconds(1)), "first retry after 1s");
+
+        // Not due yet: nothing is delivered, and OrderPaid waits behind it
+        dispatcher.poll();
+        assertEquals(List.of(OrderEvent.ORDER_CREATED), delivered);
+
+        makeDue(orderId);
+        before = LocalDateTime.now();
+        dispatcher.poll();
+        created = events(orderId).get(0);
+        assertEquals(2, created.getAttempts());
+        assertTrue(!created.getNextAttemptAt().isBefore(before.plusSeconds(2)), "second retry after 2s");
+
+        makeDue(orderId);
+        dispatcher.poll();
+        created = events(orderId).get(0);
+        assertEquals(OutboxEvent.STATUS_FAILED, created.getStatus());
+        assertEquals(3, created.getAttempts());
+
+        // Parking it releases OrderPaid
+        dispatcher.poll();
+        assertEquals(OutboxEvent.STATUS_DISPATCHED, events(orderId).get(1).getStatus());
+        assertEquals(List.of(OrderEvent.ORDER_CREATED, OrderEvent.ORDER_CREATED, OrderEvent.ORDER_CREATED,
+                OrderEvent.ORDER_PAID), delivered);
+        assertEquals(1, dispatcher.getGaveUpCount());
+        assertEquals(2, dispatcher.getRetryCount());
+    }
+
+    @Test
+    void concurrentPollsNeverDeliverTheSameEvent() throws Exception {
+        Set<Long> orderIds = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            orderIds.add(createOrder());
+        }
+        List<Long> delivered = Collections.synchronizedList(new ArrayList<>());
+        Set<Long> deliveredTwice = ConcurrentHashMap.newKeySet();
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        OrderEventHandler handler = event -> {
+            if (orderIds.contains(event.getOrderId())) {
+                delivered.add(event.getEventId());
+                if (!seen.add(event.getEventId())) {
+                    deliveredTwice.add(event.getEventId());
+                }
+                sleep(Duration.ofMillis(5));
+            }
+        };
+        // Two instances, small batches, so both keep polling while the other holds locks
+        OutboxDispatcher first = dispatcher(3, handler, 5);
+        OutboxDispatcher second = dispatcher(3, handler, 5);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> polls = new ArrayList<>();
+        for (OutboxDispatcher dispatcher : List.of(first, second)) {
+            polls.add(executor.submit(() -> {
+                assertTrue(start.await(10, TimeUnit.SECONDS));
+                dispatcher.poll();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> poll : polls) {
+            poll.get(60, TimeUnit.SECONDS);
+        }
+        // Whatever the two polls left behind (each stops after 20 batches)
+        for (int i = 0; i < 50 && orderIds.stream().anyMatch(this::hasPendingEvents); i++) {
+            first.poll();
+        }
+
+        assertEquals(Set.of(), deliveredTwice);
+        assertEquals(40, delivered.size());
+        assertTrue(first.getDispatchedCount() > 0 && second.getDispatchedCount() > 0, "both instances delivered");
+    }
+
+    private OutboxDispatcher dispatcher(int maxAttempts, OrderEventHandler handler) {
+        return dispatcher(maxAttempts, handler, 1000);
+    }
+
+    /**
+     * A dispatcher like the application's, with one handler and a 1s initial backoff
+     */
+    private OutboxDispatcher dispatcher(int maxAttempts, OrderEventHandler handler, int batchSize) {
+        return new OutboxDispatcher(outboxEventRepository, List.of(handler), transactionManager, objectMapper,
+                new SimpleMeterRegistry(), batchSize, maxAttempts, Duration.ofSeconds(1), Duration.ofMinutes(1),
+                Duration.ofDays(7));
+    }
+
+    private Long createOrder() {
+        Long userId = createUser();
+        cartService.addToCart(userId, new AddToCartRequest(createProduct("12.50", 10), 2), null);
+        return orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville")).getId();
+    }
+
+    /**
+     * Helper method: the order's events in aggregate_seq order
+     */
+    private List<OutboxEvent> events(Long orderId) {
+        return outboxEventRepository.findByAggregateIdOrderByAggregateSeq(orderId);
+    }
+
+    private boolean hasPendingEvents(Long orderId) {
+        return events(orderId).stream().anyMatch(event -> OutboxEvent.STATUS_PENDING.equals(event.getStatus()));
+    }
+
+    /**
+     * Helper method: skip the backoff wait
+     */
+    private void makeDue(Long orderId) {
+        jdbcTemplate.update("UPDATE outbox_events SET next_attempt_at = ? WHERE aggregate_id = ?",
+                LocalDateTime.now().minusSeconds(1), orderId);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.ecommerce.search;
+
+import com.example.ecommerce.model.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rebuilding the index while searches and writes keep going, and prefixes that expand to too many terms
+ */
+class ProductSearchIndexTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final ProductSearchIndex index = new ProductSearchIndex(productRepository);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writesDuringARebuildSurviveTheSwap() throws Exception {
+        scanReturns(List.of(product(1L, "Red mug"), product(2L, "Blue pen")), null, null);
+        index.rebuild();
+
+        // The scan reads the old state of every product, the writes land while it is stalled
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        scanReturns(List.of(product(1L, "Red mug"), product(2L, "Blue pen")), scanning, resume);
+        Future<?> rebuild = executor.submit(index::rebuild);
+        assertTrue(scanning.await(10, TimeUnit.SECONDS));
+
+        index.index(product(1L, "Green mug"));
+        index.remove(2L);
+        index.index(product(3L, "Yellow pencil"));
+        // The current index stays searchable (and up to date) during the scan
+        assertEquals(List.of(1L), ids("green"));
+        assertEquals(List.of(), ids("blue"));
+
+        resume.countDown();
+        rebuild.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(1L), ids("green"));
+        assertEquals(List.of(), ids("red"));
+        assertEquals(List.of(), ids("blue"));
+        assertEquals(List.of(3L), ids("pen"));
+    }
+
+    @Test
+    void laterRebuildsDoNotReplayOldWrites() {
+        scanReturns(List.of(product(1L, "Red mug")), null, null);
+        index.rebuild();
+        index.index(product(1L, "Green mug"));
+
+        scanReturns(List.of(product(1L, "Black mug")), null, null);
+        index.rebuild();
+
+        assertEquals(List.of(1L), ids("black"));
+        assertEquals(List.of(), ids("green"));
+    }
+
+    @Test
+    void prefixWithTooManyTermsIsFlaggedTruncated() {
+        List<Product> products = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) {
+            products.add(product(id, "Mug" + id));
+        }
+        scanReturns(products, null, null);
+        index.rebuild();
+
+        ProductSearchIndex.SearchResult shortPrefix = index.search("m", 0, 10);
+        assertTrue(shortPrefix.isTruncated());
+        assertEquals(256, shortPrefix.getTotal(), "the matches of the first 256 terms");
+
+        ProductSearchIndex.SearchResult longerPrefix = index.search("mug1", 0, 10);
+        assertFalse(longerPrefix.isTruncated());
+        assertEquals(111, longerPrefix.getTotal(), "mug1, mug10-mug19, mug100-mug199");
+        assertFalse(index.search("stationery", 0, 10).isTruncated());
+    }
+
+    /**
+     * Helper method: the products table as one batch; with latches, the scan signals and waits before returning
+     */
+    private void scanReturns(List<Product> products, CountDownLatch scanning, CountDownLatch resume) {
+        when(productRepository.findAllBy(any(ScrollPosition.class), any(Sort.class), any(Limit.class)))
+                .thenAnswer(invocation -> {
+                    if (scanning != null) {
+                        scanning.countDown();
+                        assertTrue(resume.await(10, TimeUnit.SECONDS));
+                    }
+                    return Window.from(products, ScrollPosition::offset);
+                });
+    }
+
+    private List<Long> ids(String query) {
+        return index.search(query, 0, 10).getProductIds();
+    }
+
+    private Product product(Long id, String name) {
+        return Product.builder().id(id).name(name).category("stationery").build();
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.cart.CartStore;
+import com.example.ecommerce.controller.CartController;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CartBatchRequest;
+import com.example.ecommerce.dto.CartBatchResponse;
+import com.example.ecommerce.dto.CartOperationRequest;
+import com.example.ecommerce.dto.CartResponse;
+import com.example.ecommerce.exception.GlobalExceptionHandler;
+import com.example.ecommerce.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conditional cart changes (If-Match / ETag) and the retries of changes that lose an
+ * optimistic locking race, through CartController on the jpa store
+ */
+class CartServiceTest extends DatabaseTest {
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void staleIfMatchIsRejectedWithTheCurrentETag() throws Exception {
+        Long userId = createUser();
+        CartService cartService = cartService(cartStore);
+        CartResponse cart = cartService.addToCart(userId, new AddToCartRequest(createProduct("4.00", 10), 1), null);
+        Long itemId = cart.getItems().get(0).getId();
+        // Another tab changes the cart
+        cartService.updateCartItem(userId, itemId, 2, cart.getVersion());
+
+        mockMvc(cartService).perform(put("/api/cart/update/" + itemId).param("quantity", "5")
+                        .header(HttpHeaders.IF_MATCH, "\"" + cart.getVersion() + "\"")
+                        .principal(authentication(userId)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + (cart.getVersion() + 1) + "\""));
+
+        assertEquals(2, quantity(userId));
+        assertEquals(1, conflicts("update", "precondition_failed"));
+    }
+
+    @Test
+    void changeThatLosesARaceIsRetriedAndApplied() throws Exception {
+        Long userId = createUser();
+        CartResponse cart = cartService(cartStore)
+                .addToCart(userId, new AddToCartRequest(createProduct("4.00", 10), 1), null);
+        Long itemId = cart.getItems().get(0).getId();
+        CartService cartService = cartService(new ConcurrentChangeCartStore(1));
+
+        mockMvc(cartService).perform(put("/api/cart/update/" + itemId).param("quantity", "5")
+                        .principal(authentication(userId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].quantity").value(5))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + (cart.getVersion() + 2) + "\""));
+
+        assertEquals(5, quantity(userId));
+        assertEquals(1, meterRegistry.counter("app.carts.retries", "operation", "update").count());
+        assertEquals(0, conflicts("update", "retries_exhausted"));
+    }
+
+    @Test
+    void changeThatKeepsLosingAnswers409() throws Exception {
+        Long userId = createUser();
+        CartResponse cart = cartService(cartStore)
+                .addToCart(userId, new AddToCartRequest(createProduct("4.00", 10), 1), null);
+        Long itemId = cart.getItems().get(0).getId();
+        CartService cartService = cartService(new ConcurrentChangeCartStore(Integer.MAX_VALUE));
+
+        mockMvc(cartService).perform(put("/api/cart/update/" + itemId).param("quantity", "5")
+                        .principal(authentication(userId)))
+                .andExpect(status().isConflict());
+
+        assertEquals(1, quantity(userId));
+        assertEquals(2, meterRegistry.counter("app.carts.retries", "operation", "update").count());
+        assertEquals(1, conflicts("update", "retries_exhausted"));
+    }
+
+    @Test
+    void batchWithANullOperationIsRejectedBeforeTheCartIsTouched() throws Exception {
+        Long userId = createUser();
+        CartService cartService = cartService(cartStore);
+        CartResponse cart = cartService.addToCart(userId, new AddToCartRequest(createProduct("4.00", 10), 1), null);
+        List<CartOperationRequest> operations = new ArrayList<>();
+        operations.add(new CartOperationRequest(CartOperationRequest.Type.REMOVE, null,
+                cart.getItems().get(0).getId(), null));
+        operations.add(null);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> cartService.applyBatch(userId, new CartBatchRequest(operations), null));
+        assertEquals("Operation 1: operation must not be null", e.getMessage());
+
+        mockMvc(cartService).perform(post("/api/cart/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operations\":[{\"type\":\"REMOVE\",\"cartItemId\":"
+                                + cart.getItems().get(0).getId() + "},null]}")
+                        .principal(authentication(userId)))
+                .andExpect(status().isBadRequest());
+        assertEquals(1, quantity(userId));
+    }
+
+    /**
+     * A CartService over the given store, 3 attempts per change, with its own meter registry
+     */
+    private CartService cartService(CartStore store) {
+        return new CartService(store, meterRegistry, 3, Duration.ofMillis(1), Duration.ofMillis(5));
+    }
+
+    private MockMvc mockMvc(CartService cartService) {
+        return MockMvcBuilders.standaloneSetup(new CartController(cartService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    private Authentication authentication(Long userId) {
+        CustomUserDetailsService.CustomUserDetails user =
+                new CustomUserDetailsService.CustomUserDetails(userId, "test@example.com", "not-a-hash", List.of());
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+
+    private double conflicts(String operation, String outcome) {
+        return meterRegistry.counter("app.carts.conflicts", "operation", operation, "outcome", outcome).count();
+    }
+
+    private int quantity(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT ci.quantity FROM cart_items ci JOIN carts c ON c.id = ci.cart_id "
+                + "WHERE c.user_id = ?", Integer.class, userId);
+    }
+
+    /**
+     * The jpa store, with another request committing a change to the cart between the moment a
+     * change loads it and its compare-and-set on the version, for the first races updates
+     */
+    private class ConcurrentChangeCartStore implements CartStore {
+
+        private int races;
+
+        ConcurrentChangeCartStore(int races) {
+            this.races = races;
+        }
+
+        @Override
+        public CartResponse updateItem(Long userId, Long cartItemId, int quantity, Long expectedVersion) {
+            if (races == 0) {
+                return cartStore.updateItem(userId, cartItemId, quantity, expectedVersion);
+            }
+            races--;
+            return inRace(userId, () -> cartStore.updateItem(userId, cartItemId, quantity, expectedVersion));
+        }
+
+        /**
+         * Load the cart into the change's transaction, commit a version bump next to it, then run the
+         * change, which finds the cart it loaded already in its persistence context
+         */
+        private <T> T inRace(Long userId, Supplier<T> change) {
+            TransactionTemplate concurrent = new TransactionTemplate(transactionManager);
+            concurrent.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            return new TransactionTemplate(transactionManager).execute(status -> {
+                cartRepository.findWithItemsByUserId(userId).orElseThrow();
+                concurrent.executeWithoutResult(other -> cartRepository.incrementVersionByUserId(userId));
+                return change.get();
+            });
+        }
+
+        @Override
+        public CartResponse getCart(Long userId) {
+            return cartStore.getCart(userId);
+        }
+
+        @Override
+        public CartResponse addItem(Long userId, Long productId, int quantity, Long expectedVersion) {
+            return cartStore.addItem(userId, productId, quantity, expectedVersion);
+        }
+
+        @Override
+        public CartResponse removeItem(Long userId, Long cartItemId, Long expectedVersion) {
+            return cartStore.removeItem(userId, cartItemId, expectedVersion);
+        }
+
+        @Override
+        public CartBatchResponse applyBatch(Long userId, List<CartOperationRequest> operations,
+                                            Long expectedVersion) {
+            return cartStore.applyBatch(userId, operations, expectedVersion);
+        }
+
+        @Override
+        public void clear(Long userId) {
+            cartStore.clear(userId);
+        }
+
+        @Override
+        public void flush(Long userId) {
+            cartStore.flush(userId);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.exception.InsufficientStockException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Stock reservation under concurrent load: more buyers than stock, nothing oversold
+ */
+class InventoryServiceTest extends DatabaseTest {
+
+    private static final int BUYERS = 24;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void parallelReservesNeverTakeMoreThanTheStock() throws Exception {
+        Long productId = createProduct("1.00", 10);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        int reserved = runInParallel(() -> transaction.executeWithoutResult(
+                status -> inventoryService.reserve(Map.of(productId, 1))));
+
+        assertEquals(10, reserved);
+        assertEquals(0, stock(productId));
+    }
+
+    /**
+     * Every order takes two of the scarce product and one of a plentiful one,
+     * so a short order must also roll back the line it could have had
+     */
+    @Test
+    void parallelOrdersNeverOversell() throws Exception {
+        Long scarce = createProduct("5.00", 7);
+        Long plentiful = createProduct("1.00", 1000);
+        List<Long> buyers = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            Long userId = createUser();
+            cartService.addToCart(userId, new AddToCartRequest(plentiful, 1), null);
+            cartService.addToCart(userId, new AddToCartRequest(scarce, 2), null);
+            buyers.add(userId);
+        }
+
+        List<Long> queue = new ArrayList<>(buyers);
+        int ordered = runInParallel(() -> {
+            Long userId;
+            synchronized (queue) {
+                userId = queue.remove(queue.size() - 1);
+            }
+            orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville"));
+        });
+
+        assertEquals(3, ordered, "7 in stock covers three orders of 2");
+        assertEquals(1, stock(scarce));
+        assertEquals(1000 - ordered, stock(plentiful));
+        assertEquals(2L * ordered, jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE product_id = ?", Long.class, scarce));
+    }
+
+    @Test
+    void reserveAndReserveOrderRacingForTheSameStockNeverOversell() throws Exception {
+        Long productId = createProduct("2.00", 12);
+        List<Long> buyers = new ArrayList<>();
+        for (int i = 0; i < BUYERS / 2; i++) {
+            Long userId = createUser();
+            cartService.addToCart(userId, new AddToCartRequest(productId, 1), null);
+            buyers.add(userId);
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        List<Long> queue = new ArrayList<>(buyers);
+        int succeeded = runInParallel(() -> {
+            Long userId = null;
+            synchronized (queue) {
+                if (!queue.isEmpty()) {
+                    userId = queue.remove(queue.size() - 1);
+                }
+            }
+            if (userId != null) {
+                orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville"));
+            } else {
+                transaction.executeWithoutResult(status -> inventoryService.reserve(Map.of(productId, 1)));
+            }
+        });
+
+        assertEquals(12, succeeded);
+        assertEquals(0, stock(productId));
+    }
+
+    /**
+     * Helper method: run the task BUYERS times at once, returning how many succeeded
+     * Running short of stock is the only failure allowed
+     */
+    private int runInParallel(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            Callable<Void> attempt = () -> {
+                start.await();
+                task.run();
+                return null;
+            };
+            for (int i = 0; i < BUYERS; i++) {
+                results.add(executor.submit(attempt));
+            }
+            start.countDown();
+            int succeeded = 0;
+            for (Future<?> result : results) {
+                try {
+                    result.get(30, TimeUnit.SECONDS);
+                    succeeded++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(InsufficientStockException.class, e.getCause());
+                }
+            }
+            return succeeded;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int stock(Long productId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+    }
+}
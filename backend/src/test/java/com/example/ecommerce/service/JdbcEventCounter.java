@@ -0,0 +1,56 @@
+package com.example.ecommerce.service;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts what Hibernate statistics don't: executed JDBC batches, and the sequence calls
+ * of the id generators (by sequence)
+ * Registered in application-test.properties, as a listener of every session and as the
+ * statement inspector; the counts are global to the JVM, like the statistics
+ */
+public class JdbcEventCounter implements SessionEventListener, StatementInspector {
+
+    private static final Pattern SEQUENCE_CALL = Pattern.compile("select nextval\\('(\\w+)'\\)");
+
+    private static final AtomicLong batches = new AtomicLong();
+    private static final Map<String, AtomicLong> sequenceCalls = new ConcurrentHashMap<>();
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batches.incrementAndGet();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Matcher matcher = SEQUENCE_CALL.matcher(sql);
+        if (matcher.lookingAt()) {
+            sequenceCalls.computeIfAbsent(matcher.group(1), sequence -> new AtomicLong()).incrementAndGet();
+        }
+        return sql;
+    }
+
+    public static void clear() {
+        batches.set(0);
+        sequenceCalls.clear();
+    }
+
+    public static long batches() {
+        return batches.get();
+    }
+
+    public static long sequenceCalls() {
+        return sequenceCalls.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    public static long sequenceCalls(String sequence) {
+        AtomicLong calls = sequenceCalls.get(sequence);
+        return calls == null ? 0 : calls.get();
+    }
+}
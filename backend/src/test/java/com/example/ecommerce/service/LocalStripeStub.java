@@ -0,0 +1,166 @@
+package com.example.ecommerce.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal local stand-in for the Stripe API, used by the tests and the benchmarks
+ * Point the SDK at it with Stripe.overrideApiBase(stub.baseUrl()), or run main()
+ * and start the backend with STRIPE_API_BASE=http://127.0.0.1:12111
+ *
+ * POST /v1/checkout/sessions creates an open session, GET /v1/checkout/sessions/{id}
+ * returns a completed, paid session (for order 1 unless set with retrievedSession).
+ * Requests are counted, so tests can tell whether Stripe was called at all.
+ *
+ * Faults can be injected at runtime: a fixed delay before every answer and a
+ * fraction of requests answered with a Stripe-style 500.
+ */
+final class LocalStripeStub implements AutoCloseable {
+
+    /**
+     * Pending connections; the JDK default (50) drops SYNs when hundreds of clients connect at once
+     */
+    private static final int BACKLOG = 1024;
+
+    private final HttpServer server;
+    private final AtomicLong sessionIds = new AtomicLong();
+    private final AtomicInteger creates = new AtomicInteger();
+    private final AtomicInteger retrieves = new AtomicInteger();
+
+    private volatile long delayMillis;
+    private volatile double failureRate;
+    private volatile long retrievedOrderId = 1;
+    private volatile long retrievedAmountTotal = 4999;
+
+    private LocalStripeStub(HttpServer server) {
+        this.server = server;
+    }
+
+    static LocalStripeStub start() throws IOException {
+        return start(0);
+    }
+
+    static LocalStripeStub start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), BACKLOG);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        LocalStripeStub stub = new LocalStripeStub(server);
+        server.createContext("/v1/checkout/sessions", stub::sessions);
+        server.start();
+        return stub;
+    }
+
+    /**
+     * Usage: LocalStripeStub [port] [delayMillis] [failureRate]
+     */
+    public static void main(String[] args) throws IOException {
+        LocalStripeStub stub = start(args.length > 0 ? Integer.parseInt(args[0]) : 12111);
+        stub.delayMillis(args.length > 1 ? Long.parseLong(args[1]) : 0);
+        stub.failureRate(args.length > 2 ? Double.parseDouble(args[2]) : 0);
+        System.out.println("Stripe stub listening on " + stub.baseUrl());
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Delay every answer by this much (simulates a slow Stripe region)
+     */
+    void delayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Answer this fraction of requests (0..1) with HTTP 500
+     */
+    void failureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * What GET /v1/checkout/sessions/{id} answers with
+     */
+    void retrievedSession(long orderId, long amountTotal) {
+        this.retrievedOrderId = orderId;
+        this.retrievedAmountTotal = amountTotal;
+    }
+
+    /**
+     * Session.create requests received, including failed and timed out ones
+     */
+    int createCount() {
+        return creates.get();
+    }
+
+    /**
+     * Session.retrieve requests received, including failed and timed out ones
+     */
+    int retrieveCount() {
+        return retrieves.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Checkout session JSON as the Stripe API returns it for a paid session
+     */
+    static String sessionJson(String sessionId, long orderId, long amountTotal) {
+        return "{\"id\":\"" + sessionId + "\",\"object\":\"checkout.session\",\"mode\":\"payment\","
+                + "\"status\":\"complete\",\"payment_status\":\"paid\",\"currency\":\"usd\","
+                + "\"amount_total\":" + amountTotal + ",\"amount_subtotal\":" + amountTotal + ","
+                + "\"metadata\":{\"orderId\":\"" + orderId + "\"}}";
+    }
+
+    private static String openSessionJson(String sessionId) {
+        long expiresAt = System.currentTimeMillis() / 1000 + 24 * 3600;
+        return "{\"id\":\"" + sessionId + "\",\"object\":\"checkout.session\",\"mode\":\"payment\","
+                + "\"status\":\"open\",\"payment_status\":\"unpaid\",\"currency\":\"usd\","
+                + "\"url\":\"https://checkout.stripe.com/c/pay/" + sessionId + "\","
+                + "\"expires_at\":" + expiresAt + "}";
+    }
+
+    private void sessions(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            boolean create = "POST".equals(exchange.getRequestMethod());
+            (create ? creates : retrieves).incrementAndGet();
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                respond(exchange, 500, "{\"error\":{\"type\":\"api_error\",\"message\":\"Injected failure\"}}");
+                return;
+            }
+            if (create) {
+                respond(exchange, 200, openSessionJson("cs_test_stub_" + sessionIds.incrementAndGet()));
+            } else {
+                String path = exchange.getRequestURI().getPath();
+                respond(exchange, 200, sessionJson(path.substring(path.lastIndexOf('/') + 1),
+                        retrievedOrderId, retrievedAmountTotal));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
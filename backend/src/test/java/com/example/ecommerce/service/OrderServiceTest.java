@@ -0,0 +1,77 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.dto.OrderItemResponse;
+import com.example.ecommerce.dto.OrderResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Order creation: lines copied from the cart in one statement
+ */
+class OrderServiceTest extends DatabaseTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 120 lines take three blocks of the pooled sequence, not one per line
+     */
+    @Test
+    void linesTakeOneSequenceBlockPerFiftyLines() {
+        Long userId = createUser();
+        for (int i = 1; i <= 120; i++) {
+            cartService.addToCart(userId, new AddToCartRequest(createProduct(i + ".00", 10), 2), null);
+        }
+        long before = lastOrderItemId();
+
+        OrderResponse order = orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville"));
+
+        assertEquals(before + 150, lastOrderItemId());
+        List<Long> ids = order.getItems().stream().map(OrderItemResponse::getId).toList();
+        assertEquals(120, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id > before && id <= before + 150), () -> "ids " + ids);
+        assertEquals(120, ids.stream().distinct().count());
+
+        // 2 * (1 + 2 + ... + 120)
+        BigDecimal expectedTotal = new BigDecimal("14520.00");
+        assertEquals(0, expectedTotal.compareTo(order.getTotal()));
+        assertEquals(0, expectedTotal.compareTo(jdbcTemplate.queryForObject(
+                "SELECT total FROM orders WHERE id = ?", BigDecimal.class, order.getId())));
+        assertEquals(120, orderService.getOrderById(userId, order.getId()).getItems().size());
+        assertTrue(cartService.getCart(userId).getItems().isEmpty());
+    }
+
+    @Test
+    void emptyCartCreatesNothingAndTakesNoIds() {
+        Long userId = createUser();
+        cartService.getCart(userId);
+        long before = lastOrderItemId();
+
+        assertThrows(RuntimeException.class,
+                () -> orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville")));
+
+        assertEquals(before, lastOrderItemId());
+        assertTrue(orderService.getUserOrders(userId).isEmpty());
+    }
+
+    private long lastOrderItemId() {
+        return jdbcTemplate.queryForObject("SELECT last_value FROM order_items_seq", Long.class);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CartBatchRequest;
+import com.example.ecommerce.dto.CartOperationRequest;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.dto.OrderPageResponse;
+import com.example.ecommerce.dto.OrderResponse;
+import com.example.ecommerce.repository.OrderFilter;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reading carts and orders takes a fixed number of statements, whatever the number of lines
+ * (Hibernate statistics, enabled by hibernate.generate_statistics), and writing them a fixed
+ * number of statements or JDBC batches (JdbcEventCounter)
+ */
+class StatementCountTest extends DatabaseTest {
+
+    private static final int FEW = 2;
+    private static final int MANY = 12;
+    private static final int LARGE = 100;
+    /**
+     * hibernate.jdbc.batch_size, and the INCREMENT BY of the id sequences (V3)
+     */
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        assertTrue(statistics.isStatisticsEnabled(), "hibernate.generate_statistics must be on");
+    }
+
+    @Test
+    void cartIsRenderedWithOneStatement() {
+        Long fewLines = userWithCartOf(FEW);
+        Long manyLines = userWithCartOf(MANY);
+
+        assertEquals(MANY, countStatements(1, () -> cartService.getCart(manyLines)).getItems().size());
+        assertEquals(FEW, countStatements(1, () -> cartService.getCart(fewLines)).getItems().size());
+    }
+
+    @Test
+    void userOrdersAreListedWithOneStatement() {
+        Long userId = createUser();
+        for (int i = 0; i < FEW; i++) {
+            placeOrderOf(userId, MANY);
+        }
+
+        List<OrderResponse> orders = countStatements(1, () -> orderService.getUserOrders(userId));
+
+        assertEquals(FEW, orders.size());
+        orders.forEach(order -> assertEquals(MANY, order.getItems().size()));
+    }
+
+    @Test
+    void orderDetailsAreLoadedWithOneStatement() {
+        Long userId = createUser();
+        Long orderId = placeOrderOf(userId, MANY);
+
+        assertEquals(MANY, countStatements(1, () -> orderService.getOrderById(userId, orderId)).getItems().size());
+    }
+
+    /**
+     * Page query, count query and one batch for the items of the page
+     */
+    @Test
+    void adminOrderPageTakesThreeStatements() {
+        Long userId = createUser();
+        for (int i = 0; i < FEW; i++) {
+            placeOrderOf(userId, MANY);
+        }
+        OrderFilter filter = new OrderFilter(null, null, null, userId);
+
+        OrderPageResponse page = countStatements(3, () -> orderService.getOrders(filter, 0, FEW - 1));
+
+        assertEquals(FEW - 1, page.getContent().size());
+        assertEquals(MANY, page.getContent().get(0).getItems().size());
+    }
+
+    /**
+     * Cart lock, order insert, the INSERT ... SELECT of the lines, the cart's version bump and
+     * delete, the stock update, the event's seq and insert, and the order total: the same for
+     * 2 lines as for 100, apart from the id generators' sequence calls
+     */
+    @Test
+    void orderTakesTheSameStatementsWhateverTheNumberOfLines() {
+        Long fewLines = userWithCartOf(FEW);
+        Long manyLines = userWithCartOf(LARGE);
+
+        long statementsForFew = countOrderStatements(fewLines);
+        long orderItemIds = orderItemsSequence();
+        long statementsForMany = countOrderStatements(manyLines);
+
+        assertEquals(9, statementsForFew, "statements other than sequence calls");
+        assertEquals(statementsForFew, statementsForMany);
+        assertEquals(3, JdbcEventCounter.batches(), "order insert, event insert, order total update");
+        assertEquals(LARGE, orderItemsSequence() - orderItemIds, "2 blocks of 50 ids for 100 lines");
+    }
+
+    /**
+     * 100 new lines are inserted in two JDBC batches, with ids from 2 or 3 sequence calls
+     * (depending on what is left of the id block in hand)
+     */
+    @Test
+    void cartLinesAreInsertedInJdbcBatches() {
+        Long userId = createUser();
+        List<CartOperationRequest> operations = new ArrayList<>();
+        for (int i = 0; i < LARGE; i++) {
+            operations.add(new CartOperationRequest(CartOperationRequest.Type.ADD, createProduct("1.00", 100), null, 1));
+        }
+        statistics.clear();
+        JdbcEventCounter.clear();
+
+        cartService.applyBatch(userId, new CartBatchRequest(operations), null);
+
+        assertEquals(LARGE + 1, statistics.getEntityInsertCount(), "the cart and its lines");
+        assertEquals(1 + LARGE / BATCH_SIZE, JdbcEventCounter.batches(), "the cart's insert, then 2 batches of 50 lines");
+        long sequenceCalls = JdbcEventCounter.sequenceCalls("cart_items_seq");
+        assertTrue(sequenceCalls >= LARGE / BATCH_SIZE && sequenceCalls <= LARGE / BATCH_SIZE + 1,
+                sequenceCalls + " sequence calls");
+    }
+
+    private long countOrderStatements(Long userId) {
+        statistics.clear();
+        JdbcEventCounter.clear();
+        orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville"));
+        return statistics.getPrepareStatementCount() - JdbcEventCounter.sequenceCalls();
+    }
+
+    private long orderItemsSequence() {
+        return jdbcTemplate.queryForObject("SELECT last_value FROM order_items_seq", Long.class);
+    }
+
+    private <T> T countStatements(long expected, Supplier<T> call) {
+        statistics.clear();
+        T result = call.get();
+        assertEquals(expected, statistics.getPrepareStatementCount(), "prepared statements");
+        return result;
+    }
+
+    private Long userWithCartOf(int lines) {
+        Long userId = createUser();
+        for (int i = 0; i < lines; i++) {
+            cartService.addToCart(userId, new AddToCartRequest(createProduct("1.00", 100), 1), null);
+        }
+        return userId;
+    }
+
+    private Long placeOrderOf(Long userId, int lines) {
+        for (int i = 0; i < lines; i++) {
+            cartService.addToCart(userId, new AddToCartRequest(createProduct("1.00", 100), 1), null);
+        }
+        return orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville")).getId();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.controller.CheckoutController;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.exception.GlobalExceptionHandler;
+import com.example.ecommerce.stripe.StripeGateway;
+import com.stripe.Stripe;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * POST /api/checkout/session against LocalStripeStub, with the gateway from
+ * application-test.properties (2 concurrent calls, 100ms to get a slot)
+ */
+class StripeCheckoutTest extends DatabaseTest {
+
+    @Autowired
+    private StripeService stripeService;
+
+    @Autowired
+    private StripeGateway stripeGateway;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    private LocalStripeStub stub;
+    private MockMvc mockMvc;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = LocalStripeStub.start();
+        Stripe.overrideApiBase(stub.baseUrl());
+        mockMvc = MockMvcBuilders.standaloneSetup(new CheckoutController(stripeService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+        stub.close();
+    }
+
+    @Test
+    void fullBulkheadAnswers503WithRetryAfter() throws Exception {
+        Long userId = createUser();
+        Long orderId = createOrder(userId);
+
+        // Two calls hold the gateway's slots until released
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Object>> held = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            held.add(executor.submit(() -> stripeGateway.call("test.hold", options -> await(release))));
+        }
+        StripeGatewayTest.awaitInFlight(stripeGateway, 2);
+
+        createSession(userId, orderId)
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        assertEquals(0, stub.createCount(), "a rejected call never reaches Stripe");
+
+        release.countDown();
+        for (Future<Object> call : held) {
+            call.get(10, TimeUnit.SECONDS);
+        }
+        createSession(userId, orderId)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.checkoutUrl").exists());
+        assertEquals(1, stub.createCount());
+    }
+
+    @Test
+    void stripeTimeoutAnswers503() throws Exception {
+        Long userId = createUser();
+        Long orderId = createOrder(userId);
+        stub.delayMillis(3000);
+
+        createSession(userId, orderId)
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * Helper method: block a gateway call until the latch opens
+     */
+    private static Object await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Long createOrder(Long userId) {
+        cartService.addToCart(userId, new AddToCartRequest(createProduct("12.50", 10), 2), null);
+        return orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville")).getId();
+    }
+
+    private ResultActions createSession(Long userId, Long orderId) throws Exception {
+        CustomUserDetailsService.CustomUserDetails user =
+                new CustomUserDetailsService.CustomUserDetails(userId, "test@example.com", "not-a-hash", List.of());
+        Authentication authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        return mockMvc.perform(post("/api/checkout/session")
+                .principal(authentication)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"orderId\":" + orderId + "}"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.exception.PaymentProviderUnavailableException;
+import com.example.ecommerce.stripe.CircuitBreaker;
+import com.example.ecommerce.stripe.StripeGateway;
+import com.stripe.Stripe;
+import com.stripe.model.checkout.Session;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * StripeGateway against LocalStripeStub: timeouts, circuit breaker and bulkhead
+ */
+class StripeGatewayTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(300);
+
+    private LocalStripeStub stub;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = LocalStripeStub.start();
+        Stripe.apiKey = "sk_test_stub";
+        Stripe.overrideApiBase(stub.baseUrl());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+        stub.close();
+    }
+
+    @Test
+    void slowAnswerTimesOutAndCountsAsAFailure() {
+        StripeGateway gateway = gateway(4, Duration.ofMillis(200));
+        stub.delayMillis(2000);
+
+        long start = System.nanoTime();
+        PaymentProviderUnavailableException e = assertThrows(PaymentProviderUnavailableException.class,
+                () -> retrieve(gateway));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1500, "gave up at the read timeout");
+        assertTrue(e.getRetryAfterSeconds() > 0);
+        assertEquals(1, gateway.stats().getFailures());
+    }
+
+    @Test
+    void breakerOpensAfterFailuresAndFailsFastWithRetryAfter() {
+        StripeGateway gateway = gateway(4, Duration.ofSeconds(2));
+        stub.failureRate(1);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(PaymentProviderUnavailableException.class, () -> retrieve(gateway));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, gateway.getCircuitState());
+        int reachedStripe = stub.retrieveCount();
+
+        PaymentProviderUnavailableException e = assertThrows(PaymentProviderUnavailableException.class,
+                () -> retrieve(gateway));
+
+        assertEquals(reachedStripe, stub.retrieveCount(), "an open breaker does not call Stripe");
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertEquals(1, gateway.stats().getShortCircuits());
+    }
+
+    @Test
+    void halfOpenProbesThatSucceedCloseTheBreaker() throws Exception {
+        StripeGateway gateway = openBreaker();
+        stub.failureRate(0);
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+
+        assertEquals("order", retrieve(gateway));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, gateway.getCircuitState());
+        assertEquals("order", retrieve(gateway));
+
+        assertEquals(CircuitBreaker.State.CLOSED, gateway.getCircuitState());
+    }
+
+    @Test
+    void failedHalfOpenProbeOpensTheBreakerAgain() throws Exception {
+        StripeGateway gateway = openBreaker();
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+
+        assertThrows(PaymentProviderUnavailableException.class, () -> retrieve(gateway));
+
+        assertEquals(CircuitBreaker.State.OPEN, gateway.getCircuitState());
+    }
+
+    @Test
+    void fullBulkheadRejectsWithoutCallingStripe() throws Exception {
+        StripeGateway gateway = gateway(2, Duration.ofSeconds(5));
+        stub.delayMillis(1000);
+        List<Future<String>> slowCalls = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            slowCalls.add(executor.submit(() -> retrieve(gateway)));
+        }
+        awaitInFlight(gateway, 2);
+
+        PaymentProviderUnavailableException e = assertThrows(PaymentProviderUnavailableException.class,
+                () -> retrieve(gateway));
+
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertEquals(1, gateway.stats().getBulkheadRejections());
+        for (Future<String> call : slowCalls) {
+            assertEquals("order", call.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(2, stub.retrieveCount());
+        assertEquals(CircuitBreaker.State.CLOSED, gateway.getCircuitState(), "rejections are not Stripe's fault");
+    }
+
+    /**
+     * A gateway with a breaker over the last 4 calls, opening at 50% failures for OPEN_DURATION, 2 probes
+     */
+    static StripeGateway gateway(int maxConcurrent, Duration readTimeout) {
+        return new StripeGateway(maxConcurrent, Duration.ofMillis(100), Duration.ofSeconds(1), readTimeout, 0,
+                4, 4, 0.5, OPEN_DURATION, 2, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Helper method: wait until the gateway has this many calls in flight
+     */
+    static void awaitInFlight(StripeGateway gateway, int calls) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (gateway.getInFlight() < calls) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Calls never reached the gateway");
+            }
+            LockSupport.parkNanos(Duration.ofMillis(5).toNanos());
+        }
+    }
+
+    private StripeGateway openBreaker() {
+        StripeGateway gateway = gateway(4, Duration.ofSeconds(2));
+        stub.failureRate(1);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(PaymentProviderUnavailableException.class, () -> retrieve(gateway));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, gateway.getCircuitState());
+        return gateway;
+    }
+
+    private String retrieve(StripeGateway gateway) throws Exception {
+        Session session = gateway.call("checkout.session.retrieve",
+                options -> Session.retrieve("cs_test_gateway", options.build()));
+        return session.getMetadata().containsKey("orderId") ? "order" : "none";
+    }
+}
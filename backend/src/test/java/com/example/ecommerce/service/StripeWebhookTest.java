@@ -0,0 +1,182 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.DatabaseTest;
+import com.example.ecommerce.dto.AddToCartRequest;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.dto.OrderResponse;
+import com.example.ecommerce.exception.PaymentProviderUnavailableException;
+import com.example.ecommerce.model.StripeWebhookEvent;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.repository.StripeWebhookEventRepository;
+import com.stripe.Stripe;
+import com.stripe.net.Webhook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Webhook deliveries applied against LocalStripeStub: the session comes from the signed
+ * payload, Stripe is only asked when the payload can't be read
+ */
+class StripeWebhookTest extends DatabaseTest {
+
+    @Autowired
+    private StripeService stripeService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StripeWebhookEventRepository webhookEventRepository;
+
+    @Value("${stripe.webhook.secret}")
+    private String webhookSecret;
+
+    private LocalStripeStub stub;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = LocalStripeStub.start();
+        Stripe.overrideApiBase(stub.baseUrl());
+    }
+
+    @AfterEach
+    void tearDown() {
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+        stub.close();
+    }
+
+    @Test
+    void paidSessionInThePayloadMarksTheOrderPaidWithoutCallingStripe() throws Exception {
+        OrderResponse order = createOrder();
+        String eventId = deliver(LocalStripeStub.sessionJson("cs_test_payload", order.getId(), 2500));
+
+        stripeService.applyQueuedEvent(eventId);
+
+        assertEquals("paid", orderStatus(order));
+        assertEquals(StripeWebhookEvent.STATUS_PROCESSED, eventStatus(eventId));
+        assertEquals(0, stub.retrieveCount());
+    }
+
+    @Test
+    void unreadablePayloadFallsBackToRetrievingTheSession() throws Exception {
+        OrderResponse order = createOrder();
+        stub.retrievedSession(order.getId(), 2500);
+        String eventId = deliver(unreadableSessionJson("cs_test_fallback"));
+
+        stripeService.applyQueuedEvent(eventId);
+
+        assertEquals("paid", orderStatus(order));
+        assertEquals(1, stub.retrieveCount());
+    }
+
+    @Test
+    void amountThatDoesNotMatchTheOrderLeavesItPending() throws Exception {
+        OrderResponse order = createOrder();
+        String eventId = deliver(LocalStripeStub.sessionJson("cs_test_short", order.getId(), 2499));
+
+        stripeService.applyQueuedEvent(eventId);
+
+        assertEquals("pending", orderStatus(order));
+        assertEquals(StripeWebhookEvent.STATUS_PROCESSED, eventStatus(eventId), "not retried, left for review");
+    }
+
+    @Test
+    void retrieveTimeoutLeavesTheEventForARetry() throws Exception {
+        OrderResponse order = createOrder();
+        stub.retrievedSession(order.getId(), 2500);
+        stub.delayMillis(3000);
+        String eventId = deliver(unreadableSessionJson("cs_test_timeout"));
+
+        assertThrows(PaymentProviderUnavailableException.class, () -> stripeService.applyQueuedEvent(eventId));
+
+        assertEquals("pending", orderStatus(order));
+        assertEquals(StripeWebhookEvent.STATUS_PENDING, eventStatus(eventId));
+
+        stub.delayMillis(0);
+        stripeService.applyQueuedEvent(eventId);
+        assertEquals("paid", orderStatus(order));
+    }
+
+    @Test
+    void redeliveryIsQueuedOnce() throws Exception {
+        OrderResponse order = createOrder();
+        String payload = eventJson("evt_test_" + UUID.randomUUID(),
+                LocalStripeStub.sessionJson("cs_test_redelivered", order.getId(), 2500));
+
+        assertTrue(stripeService.handleWebhook(payload, signature(payload)));
+        assertFalse(stripeService.handleWebhook(payload, signature(payload)));
+    }
+
+    @Test
+    void badSignatureIsRejected() {
+        String payload = eventJson("evt_test_" + UUID.randomUUID(),
+                LocalStripeStub.sessionJson("cs_test_forged", 1, 2500));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> stripeService.handleWebhook(payload, "t=" + Webhook.Util.getTimeNow() + ",v1=forged"));
+    }
+
+    /**
+     * Helper method: a pending order totalling 25.00
+     */
+    private OrderResponse createOrder() {
+        Long userId = createUser();
+        cartService.addToCart(userId, new AddToCartRequest(createProduct("12.50", 10), 2), null);
+        return orderService.createOrder(userId, new CreateOrderRequest("1 Test Street, Testville"));
+    }
+
+    /**
+     * Helper method: queue a signed checkout.session.completed delivery, returns its event id
+     */
+    private String deliver(String sessionJson) throws Exception {
+        String eventId = "evt_test_" + UUID.randomUUID();
+        String payload = eventJson(eventId, sessionJson);
+        assertTrue(stripeService.handleWebhook(payload, signature(payload)));
+        return eventId;
+    }
+
+    private String eventJson(String eventId, String sessionJson) {
+        return "{\"id\":\"" + eventId + "\",\"object\":\"event\",\"api_version\":\"" + Stripe.API_VERSION + "\","
+                + "\"type\":\"checkout.session.completed\",\"data\":{\"object\":" + sessionJson + "}}";
+    }
+
+    /**
+     * Helper method: a session this SDK version can't deserialize (a field changed type)
+     */
+    private String unreadableSessionJson(String sessionId) {
+        return "{\"id\":\"" + sessionId + "\",\"object\":\"checkout.session\",\"amount_total\":{\"value\":2500}}";
+    }
+
+    /**
+     * Helper method: the Stripe-Signature header Stripe would send with this payload
+     */
+    private String signature(String payload) throws Exception {
+        long timestamp = Webhook.Util.getTimeNow();
+        String v1 = Webhook.Util.computeHmacSha256(webhookSecret, timestamp + "." + payload);
+        return "t=" + timestamp + ",v1=" + v1;
+    }
+
+    private String orderStatus(OrderResponse order) {
+        return orderRepository.findById(order.getId()).orElseThrow().getStatus();
+    }
+
+    private String eventStatus(String eventId) {
+        return webhookEventRepository.findById(eventId).orElseThrow().getStatus();
+    }
+}
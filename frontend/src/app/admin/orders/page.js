@@ -8,6 +8,9 @@ import { isAuthenticated, getUser } from '@/lib/auth';
 export default function AdminOrdersPage() {
   const router = useRouter();
   const [orders, setOrders] = useState([]);
+  const [page, setPage] = useState(0);
+  const [totalPages, setTotalPages] = useState(0);
+  const [totalOrders, setTotalOrders] = useState(0);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState('');
   const [updatingOrderId, setUpdatingOrderId] = useState(null);
@@ -19,15 +22,17 @@ export default function AdminOrdersPage() {
       router.push('/');
       return;
     }
-    fetchOrders();
-  }, []);
+    fetchOrders(page);
+  }, [page]);
 
-  const fetchOrders = async () => {
+  const fetchOrders = async (pageToLoad = page) => {
     setLoading(true);
     setError('');
     try {
-      const data = await adminAPI.getOrders();
-      setOrders(data);
+      const data = await adminAPI.getOrders(pageToLoad);
+      setOrders(data.content);
+      setTotalPages(data.totalPages);
+      setTotalOrders(data.totalElements);
     } catch (err) {
       setError('Failed to load orders');
       console.error(err);
@@ -80,7 +85,7 @@ export default function AdminOrdersPage() {
       <div className="flex justify-between items-center mb-6">
         <h1 className="text-3xl font-bold">All Orders</h1>
         <p className="text-gray-600 dark:text-gray-400">
-          Total: {orders.length} orders
+          Total: {totalOrders} orders
         </p>
       </div>
 
@@ -163,6 +168,28 @@ export default function AdminOrdersPage() {
           ))}
         </div>
       )}
+
+      {totalPages > 1 && (
+        <div className="flex justify-center items-center gap-4 mt-8">
+          <button
+            onClick={() => setPage(page - 1)}
+            disabled={page === 0}
+            className="px-4 py-2 bg-blue-600 hover:bg-blue-700 text-white rounded-md font-medium disabled:opacity-50 disabled:cursor-not-allowed transition-colors"
+          >
+            Previous
+          </button>
+          <span className="text-gray-600 dark:text-gray-400">
+            Page {page + 1} of {totalPages}
+          </span>
+          <button
+            onClick={() => setPage(page + 1)}
+            disabled={page + 1 >= totalPages}
+            className="px-4 py-2 bg-blue-600 hover:bg-blue-700 text-white rounded-md font-medium disabled:opacity-50 disabled:cursor-not-allowed transition-colors"
+          >
+            Next
+          </button>
+        </div>
+      )}
     </div>
   );
 }
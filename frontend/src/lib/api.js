@@ -224,9 +224,12 @@ export const cartAPI = {
  * Admin API calls
  */
 export const adminAPI = {
-  // Get all orders (admin only)
-  getOrders: async () => {
-    return apiFetch('/admin/orders');
+  // Get one page of orders (admin only)
+  // Response: { content, page, size, totalElements, totalPages }
+  getOrders: async (page = 0, size = 20, status = null) => {
+    const params = new URLSearchParams({ page, size });
+    if (status) params.append('status', status);
+    return apiFetch(`/admin/orders?${params.toString()}`);
   },
 
   // Mark order as shipped